@@ -16,7 +16,10 @@ import javax.imageio.ImageIO;
 import javax.swing.JPanel;
 import javax.swing.UIManager;
 
+import com.kokakiwi.mclauncher.core.GameUpdater;
 import com.kokakiwi.mclauncher.core.Launcher;
+import com.kokakiwi.mclauncher.core.updater.HttpClient;
+import com.kokakiwi.mclauncher.core.updater.UpdatePrefetcher;
 import com.kokakiwi.mclauncher.graphics.LoginForm;
 import com.kokakiwi.mclauncher.utils.Configuration;
 import com.kokakiwi.mclauncher.utils.LocalString;
@@ -33,6 +36,7 @@ public class LauncherFrame extends Frame
     public LoginForm          loginForm;
     public Launcher           launcher;
     public LocalString        locale;
+    private UpdatePrefetcher  prefetcher;
 
     public LauncherFrame()
     {
@@ -57,6 +61,10 @@ public class LauncherFrame extends Frame
 
         config.load(configFile);
 
+        HttpClient.setMaxConnections(Math.max(1,
+                config.getInteger("updater.downloadThreads", 4))
+                * Math.max(1, config.getInteger("updater.segments", 4)));
+
         locale = new LocalString(this, config.getStringList("launcher.langs"));
 
         setTitle(config.getString("launcher.windowTitle"));
@@ -110,6 +118,39 @@ public class LauncherFrame extends Frame
             }
 
         });
+
+        if (config.getBoolean("updater.prefetch")
+                && !config.getBoolean("launcher.offlineMode"))
+        {
+            startPrefetch();
+        }
+    }
+
+    public void startPrefetch()
+    {
+        final UpdatePrefetcher target = new UpdatePrefetcher(new File(
+                Utils.getWorkingDirectory(this), "prefetch"));
+        synchronized (this)
+        {
+            prefetcher = target;
+        }
+
+        Thread t = new Thread() {
+            @Override
+            public void run()
+            {
+                new GameUpdater(LauncherFrame.this).prefetch(target);
+            }
+        };
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public synchronized UpdatePrefetcher takePrefetcher()
+    {
+        UpdatePrefetcher target = prefetcher;
+        prefetcher = null;
+        return target;
     }
 
     @SuppressWarnings("deprecation")
@@ -2,6 +2,7 @@ package com.kokakiwi.mclauncher.core;
 
 import java.applet.Applet;
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -11,6 +12,7 @@ import java.security.PrivilegedExceptionAction;
 import java.util.Vector;
 
 import com.kokakiwi.mclauncher.LauncherFrame;
+import com.kokakiwi.mclauncher.core.updater.RecordingClassLoader;
 import com.kokakiwi.mclauncher.core.wrapper.Wrapper;
 import com.kokakiwi.mclauncher.utils.State;
 import com.kokakiwi.mclauncher.utils.Utils;
@@ -78,7 +80,32 @@ public class GameLauncher implements Runnable
 
         if (classLoader == null)
         {
-            classLoader = new URLClassLoader(urls);
+            final File order = new File(dir, "classorder");
+            if (launcherFrame.config.getBoolean("updater.repackJars")
+                    && !order.exists())
+            {
+                final RecordingClassLoader recorder = new RecordingClassLoader(
+                        urls);
+                Runtime.getRuntime().addShutdownHook(new Thread() {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            recorder.saveOrder(order);
+                        }
+                        catch (IOException e)
+                        {
+                            e.printStackTrace();
+                        }
+                    }
+                });
+                classLoader = recorder;
+            }
+            else
+            {
+                classLoader = new URLClassLoader(urls);
+            }
         }
 
         String path = dir.getAbsolutePath();
@@ -1,48 +1,101 @@
 package com.kokakiwi.mclauncher.core;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.lang.reflect.Constructor;
-import java.math.BigInteger;
+import java.io.RandomAccessFile;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.security.AccessController;
 import java.security.MessageDigest;
 import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Properties;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
-import java.util.jar.Pack200;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
 import com.kokakiwi.mclauncher.LauncherFrame;
-import com.kokakiwi.mclauncher.utils.ClassesUtils;
+import com.kokakiwi.mclauncher.core.updater.ArtifactFormat;
+import com.kokakiwi.mclauncher.core.updater.BufferPool;
+import com.kokakiwi.mclauncher.core.updater.ChannelIO;
+import com.kokakiwi.mclauncher.core.updater.ChunkTree;
+import com.kokakiwi.mclauncher.core.updater.ContentDecoder;
+import com.kokakiwi.mclauncher.core.updater.ContentStore;
+import com.kokakiwi.mclauncher.core.updater.CountingInputStream;
+import com.kokakiwi.mclauncher.core.updater.DeltaPatch;
+import com.kokakiwi.mclauncher.core.updater.Digests;
+import com.kokakiwi.mclauncher.core.updater.DownloadMetrics;
+import com.kokakiwi.mclauncher.core.updater.EntryListing;
+import com.kokakiwi.mclauncher.core.updater.HashPipeline;
+import com.kokakiwi.mclauncher.core.updater.HttpClient;
+import com.kokakiwi.mclauncher.core.updater.IncrementalJar;
+import com.kokakiwi.mclauncher.core.updater.JarRepacker;
+import com.kokakiwi.mclauncher.core.updater.LzmaInputStream;
+import com.kokakiwi.mclauncher.core.updater.MirrorSelector;
+import com.kokakiwi.mclauncher.core.updater.NativesIndex;
+import com.kokakiwi.mclauncher.core.updater.Pack200Unpacker;
+import com.kokakiwi.mclauncher.core.updater.PartialDownload;
+import com.kokakiwi.mclauncher.core.updater.RetryPolicy;
+import com.kokakiwi.mclauncher.core.updater.SegmentedDownload;
+import com.kokakiwi.mclauncher.core.updater.StagedInstall;
+import com.kokakiwi.mclauncher.core.updater.TransferListener;
+import com.kokakiwi.mclauncher.core.updater.UpdateJournal;
+import com.kokakiwi.mclauncher.core.updater.UpdateManifest;
+import com.kokakiwi.mclauncher.core.updater.UpdatePrefetcher;
+import com.kokakiwi.mclauncher.core.updater.UpdateProgress;
+import com.kokakiwi.mclauncher.core.updater.XzDecoder;
+import com.kokakiwi.mclauncher.core.updater.XzFormat;
+import com.kokakiwi.mclauncher.core.updater.XzInputStream;
 import com.kokakiwi.mclauncher.utils.State;
+import com.kokakiwi.mclauncher.utils.StringFormatter;
 import com.kokakiwi.mclauncher.utils.Utils;
 
 public class GameUpdater implements Runnable
 {
-    private final LauncherFrame launcherFrame;
-    private final Launcher      launcher;
-
-    private boolean             lzmaSupported;
-    private boolean             pack200Supported;
-    public URL[]                urlList;
-    public boolean              fatalError   = false;
-    public String               fatalErrorDescription;
-    public boolean              shouldUpdate = false;
-    private int                 totalSizeDownload;
-    private int                 currentSizeDownload;
-    private int                 totalSizeExtract;
-    private int                 currentSizeExtract;
+    private final LauncherFrame   launcherFrame;
+    private final Launcher        launcher;
+
+    public URL[]                  urlList;
+    public boolean                fatalError   = false;
+    public String                 fatalErrorDescription;
+    public boolean                shouldUpdate = false;
+    private int                   totalSizeDownload;
+    private int                   totalSizeExtract;
+    private ContentStore          store;
+    private MirrorSelector        mirrors;
+    private HttpClient            http;
+    private RetryPolicy           retryPolicy;
+    private UpdatePrefetcher      prefetcher;
+    private final DownloadMetrics metrics      = new DownloadMetrics();
+    private String                installedVersion;
 
     public GameUpdater(LauncherFrame launcherFrame)
     {
@@ -52,9 +105,14 @@ public class GameUpdater implements Runnable
 
     public void run()
     {
-        init();
         launcher.setPercentage(5);
 
+        prefetcher = launcherFrame.takePrefetcher();
+        if (prefetcher != null)
+        {
+            prefetcher.cancel();
+        }
+
         try
         {
             loadJarURLs();
@@ -69,6 +127,8 @@ public class GameUpdater implements Runnable
                     });
 
             File dir = new File(path);
+            StagedInstall install = new StagedInstall(dir);
+            install.recover();
 
             if (!dir.exists())
             {
@@ -103,18 +163,30 @@ public class GameUpdater implements Runnable
                     }
                     if (shouldUpdate || forceUpdate)
                     {
-                        writeVersionFile(versionFile, "");
+                        installedVersion = readInstalledVersion(versionFile);
+
+                        File staging = install.prepare();
+                        String stagingPath = staging.getPath()
+                                + File.separator;
+                        File stagedVersionFile = new File(staging, "version");
+                        stagedVersionFile.delete();
 
-                        downloadJars(path);
-                        extractJars(path);
-                        extractNatives(path);
+                        downloadJars(stagingPath);
+                        extractJars(stagingPath);
+                        extractNatives(stagingPath);
 
                         if ((latestVersion != null)
                                 && !((latestVersion.equals("-1"))))
                         {
                             launcher.setPercentage(90);
-                            writeVersionFile(versionFile, latestVersion);
+                            writeVersionFile(stagedVersionFile, latestVersion);
                         }
+                        if (launcherFrame.config
+                                .getBoolean("updater.repackJars"))
+                        {
+                            repackJars(stagingPath);
+                        }
+                        install.commit();
                     }
                     else
                     {
@@ -123,25 +195,127 @@ public class GameUpdater implements Runnable
                     }
                 }
             }
+
+            if (launcherFrame.config.getBoolean("updater.repackJars")
+                    && !install.getStaging().exists() && needsRepack(path))
+            {
+                File staging = install.prepare();
+                repackJars(staging.getPath() + File.separator);
+                install.commit();
+            }
         }
         catch (Exception e)
         {
             e.printStackTrace();
         }
 
+        if (prefetcher != null)
+        {
+            prefetcher.discard();
+            prefetcher = null;
+        }
+
         launcher.setPercentage(90);
     }
 
+    public void prefetch(UpdatePrefetcher target)
+    {
+        try
+        {
+            URL[] urls = getJarURLs();
+            String path = Utils.getWorkingDirectory(launcherFrame)
+                    + File.separator + "bin" + File.separator;
+            UpdateJournal journal = new UpdateJournal(
+                    new File(path, "journal"), new File(path, "md5s"), true);
+
+            File directory = target.getDirectory();
+            if (!directory.exists() && !directory.mkdirs())
+            {
+                throw new IOException("Unable to create " + directory);
+            }
+            File rankings = new File(directory, "mirrors");
+            if (new File(path, "mirrors").exists())
+            {
+                ChannelIO.copy(new File(path, "mirrors"), rankings);
+            }
+
+            http = createHttpClient();
+            UpdateManifest manifest = loadManifest();
+            mirrors = new MirrorSelector(
+                    launcherFrame.config.getStringList("updater.mirrors"),
+                    rankings, http);
+            if (mirrors.hasMirrors())
+            {
+                mirrors.probe(urls);
+            }
+
+            for (int i = 0; (i < urls.length) && !target.isCancelled(); i++)
+            {
+                if (urls[i] == null)
+                {
+                    continue;
+                }
+                String fileName = getFileName(urls[i]);
+                String installedMd5 = journal.getHash(fileName);
+                URL source = mirrors.getCandidates(urls[i]).get(0);
+                UpdateManifest.Entry entry = manifest == null ? null
+                        : manifest.get(fileName);
+
+                String md5 = null;
+                if ((entry != null) && (entry.getMd5() != null))
+                {
+                    md5 = entry.getMd5();
+                }
+                else
+                {
+                    URLConnection urlconnection = http.head(source);
+                    if ((installedMd5 != null) && (installedMd5.length() > 0))
+                    {
+                        urlconnection.setRequestProperty("If-None-Match",
+                                "\"" + installedMd5 + "\"");
+                    }
+                    int code = http.getResponseCode(urlconnection);
+                    String etag = urlconnection.getHeaderField("ETag");
+                    http.release(urlconnection);
+                    if (((code / 100) != 3) && (etag != null)
+                            && (etag.length() > 2))
+                    {
+                        md5 = etag.substring(1, etag.length() - 1);
+                    }
+                }
+
+                if ((md5 != null) && !md5.equals(installedMd5))
+                {
+                    target.stage(http, source, fileName, md5);
+                }
+            }
+            mirrors.save();
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+        }
+        finally
+        {
+            target.finish();
+        }
+    }
+
     protected void loadJarURLs() throws Exception
     {
         launcher.setState(State.DETERMINING_PACKAGE);
+        urlList = getJarURLs();
+    }
+
+    protected URL[] getJarURLs() throws Exception
+    {
         List<String> jarList = launcherFrame.config
                 .getStringList("updater.jarList");
-        urlList = new URL[jarList.size() + 1];
+        URL[] urlList = new URL[jarList.size() + 1];
 
         for (int i = 0; i < jarList.size(); i++)
         {
-            urlList[i] = new URL(jarList.get(i));
+            urlList[i] = new URL(trimExtensionByCapabilities(jarList.get(i)));
         }
 
         Utils.OS osName = Utils.getPlatform();
@@ -167,6 +341,7 @@ public class GameUpdater implements Runnable
             nativeJar = trimExtensionByCapabilities(nativeJar);
             urlList[jarList.size()] = new URL(nativeJar);
         }
+        return urlList;
     }
 
     private void checkShouldUpdate()
@@ -185,540 +360,1705 @@ public class GameUpdater implements Runnable
         }
     }
 
-    protected void downloadJars(String path) throws Exception
+    protected void downloadJars(final String path) throws Exception
     {
-        File versionFile = new File(path, "md5s");
-        Properties md5s = new Properties();
+        final UpdateJournal journal = openJournal(path);
         boolean forceUpdate = launcherFrame.config.getString("force-update") == null ? false
                 : true;
-        if (versionFile.exists())
-        {
-            try
-            {
-                FileInputStream fis = new FileInputStream(versionFile);
-                md5s.load(fis);
-                fis.close();
-            }
-            catch (Exception e)
-            {
-                e.printStackTrace();
-            }
-        }
         launcher.setState(State.DOWNLOADING);
 
-        int[] fileSizes = new int[urlList.length];
+        final int[] fileSizes = new int[urlList.length];
+        final String[] expectedMd5s = new String[urlList.length];
+        final String[] expectedSha256s = new String[urlList.length];
+        final ChunkTree[] expectedTrees = new ChunkTree[urlList.length];
+        boolean sha256 = "SHA-256".equalsIgnoreCase(launcherFrame.config
+                .getString("updater.hashAlgorithm"));
         boolean[] skip = new boolean[urlList.length];
+        boolean verifyChunks = launcherFrame.config
+                .getBoolean("updater.verifyChunks");
+
+        int threads = Math.max(1, launcherFrame.config.getInteger(
+                "updater.downloadThreads", 4));
+        http = createHttpClient();
+        retryPolicy = createRetryPolicy();
+
+        UpdateManifest manifest = loadManifest();
+
+        mirrors = new MirrorSelector(
+                launcherFrame.config.getStringList("updater.mirrors"),
+                new File(path, "mirrors"), http);
+        if (mirrors.hasMirrors())
+        {
+            mirrors.probe(urlList);
+        }
 
         for (int i = 0; i < urlList.length; i++)
         {
-            URLConnection urlconnection = urlList[i].openConnection();
-            urlconnection.setDefaultUseCaches(false);
+            String fileName = getFileName(urlList[i]);
+            UpdateManifest.Entry entry = manifest == null ? null : manifest
+                    .get(fileName);
             skip[i] = false;
-            if ((urlconnection instanceof HttpURLConnection))
+
+            if ((entry != null) && (entry.getMd5() != null))
             {
-                ((HttpURLConnection) urlconnection).setRequestMethod("HEAD");
+                expectedMd5s[i] = entry.getMd5();
+                expectedSha256s[i] = sha256 ? entry.getSha256() : null;
+                expectedTrees[i] = ChunkTree.fromHex(entry.getSize(),
+                        entry.getChunkSize(), entry.getChunks());
+                skip[i] = (!forceUpdate)
+                        && entry.getMd5().equals(journal.getHash(fileName));
+                if (skip[i] && verifyChunks
+                        && !isIntact(path, fileName, entry.getMd5()))
+                {
+                    skip[i] = false;
+                }
+                fileSizes[i] = (int) Math.max(entry.getSize(), 0);
+                totalSizeDownload += fileSizes[i];
+                continue;
+            }
 
-                String etagOnDisk = "\""
-                        + md5s.getProperty(getFileName(urlList[i])) + "\"";
+            URLConnection urlconnection = http.head(mirrors.getCandidates(
+                    urlList[i]).get(0));
+            if ((urlconnection instanceof HttpURLConnection))
+            {
+                String etagOnDisk = journal.getHash(fileName);
 
                 if ((!forceUpdate) && (etagOnDisk != null))
                 {
-                    urlconnection.setRequestProperty("If-None-Match",
-                            etagOnDisk);
+                    urlconnection.setRequestProperty("If-None-Match", "\""
+                            + etagOnDisk + "\"");
                 }
 
-                int code = ((HttpURLConnection) urlconnection)
-                        .getResponseCode();
+                int code = http.getResponseCode(urlconnection);
                 if ((code / 100) == 3)
                 {
-                    skip[i] = true;
+                    skip[i] = !verifyChunks
+                            || isIntact(path, fileName, etagOnDisk);
+                    expectedMd5s[i] = etagOnDisk;
+                }
+                else
+                {
+                    String etag = urlconnection.getHeaderField("ETag");
+                    if ((etag != null) && (etag.length() > 2))
+                    {
+                        expectedMd5s[i] = etag.substring(1, etag.length() - 1);
+                    }
                 }
             }
-            fileSizes[i] = urlconnection.getContentLength();
+            fileSizes[i] = Math.max(urlconnection.getContentLength(), 0);
             totalSizeDownload += fileSizes[i];
+            http.release(urlconnection);
         }
 
-        int initialPercentage = 10;
+        final int initialPercentage = 10;
         launcher.setPercentage(initialPercentage);
+        launcher.progress.begin(UpdateProgress.Phase.DOWNLOADING,
+                totalSizeDownload);
+
+        store = null;
+        if (launcherFrame.config.getBoolean("updater.sharedStore"))
+        {
+            store = new ContentStore(Utils.getStoreDirectory(launcherFrame));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Object>> tasks = new ArrayList<Future<Object>>();
 
-        byte[] buffer = new byte[65536];
         for (int i = 0; i < urlList.length; i++)
         {
             if (skip[i])
             {
-                launcher.setPercentage(initialPercentage
-                        + ((fileSizes[i] * 45) / totalSizeDownload));
+                addDownloadProgress(initialPercentage, fileSizes[i]);
             }
             else
+            {
+                final int index = i;
+                tasks.add(pool.submit(new Callable<Object>() {
+                    public Object call() throws Exception
+                    {
+                        downloadFile(path, index, fileSizes[index],
+                                expectedMd5s[index], expectedSha256s[index],
+                                expectedTrees[index], initialPercentage,
+                                journal);
+                        return null;
+                    }
+                }));
+            }
+        }
+        pool.shutdown();
+
+        try
+        {
+            for (Future<Object> task : tasks)
             {
                 try
                 {
-                    md5s.remove(getFileName(urlList[i]));
-                    md5s.store(new FileOutputStream(versionFile),
-                            "md5 hashes for downloaded files");
-                }
-                catch (Exception e)
-                {
-                    e.printStackTrace();
+                    task.get();
                 }
-
-                int unsuccessfulAttempts = 0;
-                int maxUnsuccessfulAttempts = 3;
-                boolean downloadFile = true;
-
-                while (downloadFile)
+                catch (ExecutionException e)
                 {
-                    downloadFile = false;
-
-                    URLConnection urlconnection = urlList[i].openConnection();
-
-                    String etag = "";
-
-                    if ((urlconnection instanceof HttpURLConnection))
-                    {
-                        urlconnection.setRequestProperty("Cache-Control",
-                                "no-cache");
-
-                        urlconnection.connect();
-
-                        etag = urlconnection.getHeaderField("ETag");
-                        if (etag != null)
-                        {
-                            etag = etag.substring(1, etag.length() - 1);
-                        }
-                    }
-
-                    String currentFile = getFileName(urlList[i]);
-                    InputStream inputstream = getJarInputStream(currentFile,
-                            urlconnection);
-                    FileOutputStream fos = new FileOutputStream(path
-                            + currentFile);
-
-                    long downloadStartTime = System.currentTimeMillis();
-                    int downloadedAmount = 0;
-                    int fileSize = 0;
-                    String downloadSpeedMessage = "";
-
-                    MessageDigest m = MessageDigest.getInstance("MD5");
-                    int bufferSize;
-                    while ((bufferSize = inputstream.read(buffer, 0,
-                            buffer.length)) != -1)
-                    {
-                        fos.write(buffer, 0, bufferSize);
-                        m.update(buffer, 0, bufferSize);
-                        currentSizeDownload += bufferSize;
-                        fileSize += bufferSize;
-                        launcher.setPercentage(initialPercentage
-                                + ((currentSizeDownload * 45) / totalSizeDownload));
-                        launcher.subtaskMessage = (launcherFrame.locale
-                                .getString("updater.retrieving")
-                                + ": "
-                                + currentFile
-                                + " "
-                                + ((currentSizeDownload * 100) / totalSizeDownload) + "%");
-
-                        downloadedAmount += bufferSize;
-                        long timeLapse = System.currentTimeMillis()
-                                - downloadStartTime;
-
-                        if (timeLapse >= 1000L)
-                        {
-                            float downloadSpeed = downloadedAmount
-                                    / (float) timeLapse;
-                            downloadSpeed = (int) (downloadSpeed * 100.0F) / 100.0F;
-                            downloadSpeedMessage = " @ " + downloadSpeed
-                                    + " KB/sec";
-                            downloadedAmount = 0;
-                            downloadStartTime += 1000L;
-                        }
-
-                        launcher.subtaskMessage += downloadSpeedMessage;
-                    }
-
-                    inputstream.close();
-                    fos.close();
-                    String md5 = new BigInteger(1, m.digest()).toString(16);
-                    while (md5.length() < 32)
-                    {
-                        md5 = "0" + md5;
-                    }
-                    boolean md5Matches = true;
-                    if (etag != null)
-                    {
-                        md5Matches = md5.equals(etag);
-                    }
-
-                    if ((urlconnection instanceof HttpURLConnection))
+                    if (e.getCause() instanceof Exception)
                     {
-                        if ((md5Matches)
-                                && ((fileSize == fileSizes[i]) || (fileSizes[i] <= 0)))
-                        {
-                            try
-                            {
-                                md5s.setProperty(getFileName(urlList[i]),
-                                        etag != null ? etag : "");
-                                md5s.store(new FileOutputStream(versionFile),
-                                        "md5 hashes for downloaded files");
-                            }
-                            catch (Exception e)
-                            {
-                                e.printStackTrace();
-                            }
-                        }
-                        else
-                        {
-                            unsuccessfulAttempts++;
-                            if (unsuccessfulAttempts < maxUnsuccessfulAttempts)
-                            {
-                                downloadFile = true;
-                                currentSizeDownload -= fileSize;
-                            }
-                            else
-                            {
-                                throw new Exception("failed to download "
-                                        + currentFile);
-                            }
-                        }
+                        throw (Exception) e.getCause();
                     }
+                    throw e;
                 }
             }
         }
-
-        launcher.subtaskMessage = "";
-    }
-
-    protected void extractJars(String path) throws Exception
-    {
-        launcher.setState(State.EXTRACTING_PACKAGES);
-
-        float increment = 10.0F / urlList.length;
-
-        for (int i = 0; i < urlList.length; i++)
+        finally
         {
-            launcher.setPercentage(55 + (int) (increment * (i + 1)));
-            String filename = getFileName(urlList[i]);
-
-            if (filename.endsWith(".pack.lzma"))
-            {
-                launcher.subtaskMessage = (launcherFrame.locale
-                        .getString("updater.extracting")
-                        + ": "
-                        + filename
-                        + " "
-                        + launcherFrame.locale.getString("updater.extractTo")
-                        + " " + filename.replaceAll(".lzma", ""));
-                extractLZMA(path + filename,
-                        path + filename.replaceAll(".lzma", ""));
-
-                launcher.subtaskMessage = (launcherFrame.locale
-                        .getString("updater.extracting")
-                        + ": "
-                        + filename.replaceAll(".lzma", "")
-                        + " "
-                        + launcherFrame.locale.getString("updater.extractTo")
-                        + " " + filename.replaceAll(".pack.lzma", ""));
-                extractPack(path + filename.replaceAll(".lzma", ""), path
-                        + filename.replaceAll(".pack.lzma", ""));
-            }
-            else if (filename.endsWith(".pack"))
-            {
-                launcher.subtaskMessage = (launcherFrame.locale
-                        .getString("updater.extracting")
-                        + ": "
-                        + filename
-                        + " "
-                        + launcherFrame.locale.getString("updater.extractTo")
-                        + " " + filename.replace(".pack", ""));
-                extractPack(path + filename,
-                        path + filename.replace(".pack", ""));
-            }
-            else if (filename.endsWith(".lzma"))
-            {
-                launcher.subtaskMessage = (launcherFrame.locale
-                        .getString("updater.extracting")
-                        + ": "
-                        + filename
-                        + " "
-                        + launcherFrame.locale.getString("updater.extractTo")
-                        + " " + filename.replace(".lzma", ""));
-                extractLZMA(path + filename,
-                        path + filename.replace(".lzma", ""));
+            pool.shutdownNow();
+            mirrors.save();
+            journal.close();
+            launcher.progress.finish();
+            if (launcherFrame.config.getBoolean("updater.debug"))
+            {
+                metrics.print(System.out);
+                retryPolicy.print(System.out);
             }
         }
     }
 
-    protected void extractNatives(String path) throws Exception
+    private void downloadFile(String path, int index, int expectedSize,
+            String expectedMd5, String expectedSha256, ChunkTree expectedTree,
+            int initialPercentage, UpdateJournal journal) throws Exception
     {
-        launcher.setState(State.EXTRACTING_PACKAGES);
-
-        int initialPercentage = launcher.getPercentage();
-
-        String nativeJar = getJarName(urlList[(urlList.length - 1)]);
-        File nativeFolder = new File(path + "natives");
-        if (!nativeFolder.exists())
-        {
-            nativeFolder.mkdir();
-        }
+        String currentFile = getFileName(urlList[index]);
+        String previousMd5 = journal.getHash(currentFile);
 
-        File file = new File(path + nativeJar);
-        if (!file.exists())
+        if ((expectedTree == null) && (expectedMd5 != null))
         {
-            return;
+            expectedTree = ChunkTree.load(getChunkTreeFile(path, currentFile),
+                    expectedMd5);
         }
-        JarFile jarFile = new JarFile(file, true);
-        Enumeration<JarEntry> entities = jarFile.entries();
-
-        totalSizeExtract = 0;
-
-        while (entities.hasMoreElements())
-        {
-            JarEntry entry = entities.nextElement();
 
-            if ((entry.isDirectory()) || (entry.getName().indexOf('/') != -1))
-            {
-                continue;
-            }
-            totalSizeExtract = (int) (totalSizeExtract + entry.getSize());
-        }
+        journal.begin(currentFile);
 
-        currentSizeExtract = 0;
+        FileDownload download = new FileDownload(path, urlList[index],
+                expectedSize, expectedMd5, expectedSha256, previousMd5,
+                expectedTree, initialPercentage);
+        String etag = download.run();
 
-        entities = jarFile.entries();
+        File installed = download.getInstalled();
+        journal.complete(currentFile, etag, installed.length());
 
-        while (entities.hasMoreElements())
+        File treeFile = getChunkTreeFile(path, currentFile);
+        if ((etag != null) && (etag.length() > 0)
+                && installed.getName().equals(currentFile)
+                && ArtifactFormat.parse(currentFile).isPlain())
         {
-            JarEntry entry = entities.nextElement();
-
-            if ((entry.isDirectory()) || (entry.getName().indexOf('/') != -1))
-            {
-                continue;
-            }
-            File f = new File(path + "natives" + File.separator
-                    + entry.getName());
-            if ((f.exists()) && (!f.delete()))
+            try
             {
-                continue;
+                ChunkTree.compute(installed, getChunkSize(),
+                        Runtime.getRuntime().availableProcessors()).save(
+                        treeFile, etag);
             }
-
-            InputStream in = jarFile.getInputStream(jarFile.getEntry(entry
-                    .getName()));
-            OutputStream out = new FileOutputStream(path + "natives"
-                    + File.separator + entry.getName());
-
-            byte[] buffer = new byte[65536];
-            int bufferSize;
-            while ((bufferSize = in.read(buffer, 0, buffer.length)) != -1)
+            catch (IOException e)
             {
-                out.write(buffer, 0, bufferSize);
-                currentSizeExtract += bufferSize;
-
-                launcher.setPercentage(initialPercentage
-                        + ((currentSizeExtract * 20) / totalSizeExtract));
-                launcher.subtaskMessage = (launcherFrame.locale
-                        .getString("updater.extracting")
-                        + ": "
-                        + entry.getName()
-                        + " "
-                        + ((currentSizeExtract * 100) / totalSizeExtract) + "%");
+                e.printStackTrace();
+                treeFile.delete();
             }
-
-            in.close();
-            out.close();
         }
-        launcher.subtaskMessage = "";
-
-        jarFile.close();
-
-        File f = new File(path + nativeJar);
-        f.delete();
+        else
+        {
+            treeFile.delete();
+        }
     }
 
-    protected String trimExtensionByCapabilities(String file)
+    private boolean isIntact(String path, String fileName, String hash)
     {
-        if (!pack200Supported)
+        if ((hash == null) || !ArtifactFormat.parse(fileName).isPlain())
         {
-            file = file.replaceAll(".pack", "");
+            return true;
         }
 
-        if (!lzmaSupported)
+        File installed = new File(path + fileName);
+        if (!installed.exists())
         {
-            file = file.replaceAll(".lzma", "");
+            return false;
         }
-        return file;
-    }
 
-    protected String getJarName(URL url)
-    {
-        String fileName = url.getFile();
-        if (fileName.contains("?"))
+        ChunkTree expected = ChunkTree.load(getChunkTreeFile(path, fileName),
+                hash);
+        if (expected == null)
         {
-            fileName = fileName.substring(0, fileName.indexOf("?"));
-        }
-        if (fileName.endsWith(".pack.lzma"))
-        {
-            fileName = fileName.replaceAll(".pack.lzma", "");
+            return true;
         }
-        else if (fileName.endsWith(".pack"))
+        try
         {
-            fileName = fileName.replaceAll(".pack", "");
+            return expected.findDamaged(
+                    ChunkTree.compute(installed, expected.getChunkSize(),
+                            Runtime.getRuntime().availableProcessors()))
+                    .isEmpty();
         }
-        else if (fileName.endsWith(".lzma"))
+        catch (IOException e)
         {
-            fileName = fileName.replaceAll(".lzma", "");
+            e.printStackTrace();
+            return false;
         }
-        return fileName.substring(fileName.lastIndexOf('/') + 1);
-    }
-
-    protected void fatalErrorOccured(String error)
-    {
-        fatalError = true;
-        fatalErrorDescription = ("Fatal error occured (" + launcher.getState()
-                + "): " + error);
     }
 
-    protected String readVersionFile(File file) throws Exception
+    private File getChunkTreeFile(String path, String fileName)
     {
-        DataInputStream dis = new DataInputStream(new FileInputStream(file));
-        String version = dis.readUTF();
-        dis.close();
-        return version;
+        return new File(path + "chunks", fileName);
     }
 
-    protected void writeVersionFile(File file, String version) throws Exception
+    private int getChunkSize()
     {
-        DataOutputStream dos = new DataOutputStream(new FileOutputStream(file));
-        dos.writeUTF(version);
-        dos.close();
+        return Math.max(4096, launcherFrame.config.getInteger(
+                "updater.chunkSize", 262144));
     }
 
-    protected String getFileName(URL url)
+    private RetryPolicy createRetryPolicy()
     {
-        String fileName = url.getFile();
-        if (fileName.contains("?"))
-        {
-            fileName = fileName.substring(0, fileName.indexOf("?"));
-        }
-        return fileName.substring(fileName.lastIndexOf('/') + 1);
+        return new RetryPolicy(launcherFrame.config.getInteger(
+                "updater.retryAttempts", 3), launcherFrame.config.getInteger(
+                "updater.retryBaseDelay", 500),
+                launcherFrame.config.getInteger("updater.retryMaxDelay", 30000),
+                launcherFrame.config.getInteger("updater.breakerThreshold", 3),
+                launcherFrame.config.getInteger("updater.breakerCooldown",
+                        60000));
     }
 
-    protected InputStream getJarInputStream(String currentFile,
-            URLConnection urlconnection) throws Exception
+    private HttpClient createHttpClient()
     {
-        InputStream[] is = new InputStream[1];
+        HttpClient client = new HttpClient(launcherFrame.config.getInteger(
+                "updater.connectTimeout", 10000),
+                launcherFrame.config.getInteger("updater.stallTimeout", 15000));
 
-        for (int j = 0; (j < 3) && (is[0] == null); j++)
+        Map<String, Object> decoders = launcherFrame.config
+                .getNode("updater.contentDecoders");
+        if (decoders != null)
         {
-            ClassesUtils.GameUpdaterThread t = new ClassesUtils.GameUpdaterThread();
-            t.is = is;
-            t.urlconnection = urlconnection;
-            t.setName("JarInputStreamThread");
-            t.start();
-
-            int iterationCount = 0;
-            while ((is[0] == null) && (iterationCount++ < 5))
+            for (Map.Entry<String, Object> decoder : decoders.entrySet())
             {
                 try
                 {
-                    t.join(1000L);
+                    client.addDecoder(decoder.getKey(),
+                            (ContentDecoder) Class.forName(
+                                    String.valueOf(decoder.getValue()))
+                                    .newInstance());
                 }
-                catch (InterruptedException localInterruptedException)
+                catch (Throwable e)
                 {
+                    e.printStackTrace();
                 }
             }
-            if (is[0] != null)
-            {
-                continue;
-            }
-            try
-            {
-                t.interrupt();
-                t.join();
-            }
-            catch (InterruptedException localInterruptedException1)
-            {
-            }
-        }
-
-        if (is[0] == null)
-        {
-            throw new Exception("Unable to download " + currentFile);
         }
-
-        return is[0];
+        return client;
     }
 
-    protected void extractLZMA(String in, String out) throws Exception
+    private UpdateJournal openJournal(String path) throws IOException
     {
-        File f = new File(in);
-        if (!f.exists())
-        {
-            return;
-        }
-        FileInputStream fileInputHandle = new FileInputStream(f);
-
-        Class<?> clazz = Class.forName("LZMA.LzmaInputStream");
-        Constructor<?> constructor = clazz
-                .getDeclaredConstructor(new Class[] { InputStream.class });
+        return new UpdateJournal(new File(path, "journal"), new File(path,
+                "md5s"));
+    }
 
-        InputStream inputHandle = (InputStream) constructor
-                .newInstance(new Object[] { fileInputHandle });
+    private boolean shouldSegment(URLConnection urlconnection,
+            int contentLength)
+    {
+        int threshold = launcherFrame.config.getInteger(
+                "updater.segmentThreshold", 1048576);
+        return (urlconnection instanceof HttpURLConnection)
+                && (threshold > 0) && (contentLength >= threshold)
+                && SegmentedDownload
+                        .isSupported((HttpURLConnection) urlconnection);
+    }
 
-        OutputStream outputHandle = new FileOutputStream(out);
+    public DownloadMetrics getMetrics()
+    {
+        return metrics;
+    }
 
-        byte[] buffer = new byte[16384];
+    public RetryPolicy getRetryPolicy()
+    {
+        return retryPolicy;
+    }
 
-        int ret = inputHandle.read(buffer);
-        while (ret >= 1)
+    protected URL getPatchURL(String fileName) throws Exception
+    {
+        String template = launcherFrame.config.getString("updater.patchURL");
+        String latestVersion = launcherFrame.config.getString("latestVersion");
+        if ((template == null) || (template.trim().length() == 0)
+                || (installedVersion == null)
+                || (installedVersion.length() == 0)
+                || (latestVersion == null)
+                || latestVersion.equals(installedVersion))
         {
-            outputHandle.write(buffer, 0, ret);
-            ret = inputHandle.read(buffer);
+            return null;
         }
 
-        inputHandle.close();
-        outputHandle.close();
-
-        outputHandle = null;
-        inputHandle = null;
-
-        f.delete();
+        Map<String, String> keys = new HashMap<String, String>();
+        keys.put("FILE", fileName);
+        keys.put("FROM", installedVersion);
+        keys.put("TO", latestVersion);
+        return new URL(StringFormatter.format(template, keys));
     }
 
-    protected void extractPack(String in, String out) throws Exception
+    protected URL getEntryURL(String fileName, EntryListing.Entry entry)
+            throws Exception
     {
-        File f = new File(in);
-        if (!f.exists())
+        String template = launcherFrame.config.getString(entry == null ? "updater.entryListURL"
+                : "updater.entryURL");
+        if ((template == null) || (template.trim().length() == 0))
         {
-            return;
+            return null;
         }
 
-        FileOutputStream fostream = new FileOutputStream(out);
-        JarOutputStream jostream = new JarOutputStream(fostream);
-
-        Pack200.Unpacker unpacker = Pack200.newUnpacker();
-        unpacker.unpack(f, jostream);
-        jostream.close();
-
-        f.delete();
+        Map<String, String> keys = new HashMap<String, String>();
+        keys.put("FILE", fileName);
+        if (entry != null)
+        {
+            keys.put("HASH", entry.getMd5());
+        }
+        return new URL(StringFormatter.format(template, keys));
     }
 
-    public void init()
+    protected UpdateManifest loadManifest()
     {
-        try
-        {
-            Class.forName("LZMA.LzmaInputStream");
-            lzmaSupported = true;
-        }
-        catch (Throwable localThrowable)
+        String manifestURL = launcherFrame.config
+                .getString("updater.manifest");
+        if ((manifestURL == null) || (manifestURL.trim().length() == 0))
         {
+            return null;
         }
+
         try
         {
-            Pack200.class.getSimpleName();
-            pack200Supported = true;
+            return UpdateManifest.load(http, new URL(manifestURL));
         }
-        catch (Throwable localThrowable1)
+        catch (Exception e)
         {
+            e.printStackTrace();
         }
+        return null;
     }
 
+    private void addDownloadProgress(int initialPercentage, int amount)
+    {
+        long current = launcher.progress.add(amount);
+        if (totalSizeDownload > 0)
+        {
+            launcher.setPercentage(initialPercentage
+                    + (int) ((current * 45) / totalSizeDownload));
+        }
+    }
+
+    protected void extractJars(final String path) throws Exception
+    {
+        launcher.setState(State.EXTRACTING_PACKAGES);
+
+        List<String> archives = new ArrayList<String>();
+        for (URL url : urlList)
+        {
+            String filename = getFileName(url);
+            if (!ArtifactFormat.parse(filename).isPlain())
+            {
+                archives.add(filename);
+            }
+        }
+
+        final float increment = 10.0F / Math.max(archives.size(), 1);
+        final AtomicInteger extracted = new AtomicInteger();
+        launcher.progress.begin(UpdateProgress.Phase.EXTRACTING,
+                archives.size());
+
+        int threads = Math.max(1, Math.min(archives.size(), Runtime
+                .getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Map<String, Future<Object>> tasks = new LinkedHashMap<String, Future<Object>>();
+
+        for (final String filename : archives)
+        {
+            tasks.put(filename, pool.submit(new Callable<Object>() {
+                public Object call() throws Exception
+                {
+                    launcher.progress.setFile(filename);
+                    try
+                    {
+                        extractJar(path, filename);
+                    }
+                    finally
+                    {
+                        launcher.progress.add(1);
+                        launcher.setPercentage(55 + (int) (increment * extracted
+                                .incrementAndGet()));
+                    }
+                    return null;
+                }
+            }));
+        }
+        pool.shutdown();
+
+        StringBuilder failures = new StringBuilder();
+        try
+        {
+            for (Map.Entry<String, Future<Object>> task : tasks.entrySet())
+            {
+                try
+                {
+                    task.getValue().get();
+                }
+                catch (ExecutionException e)
+                {
+                    e.getCause().printStackTrace();
+                    failures.append(failures.length() > 0 ? ", " : "")
+                            .append(task.getKey()).append(" (")
+                            .append(e.getCause()).append(')');
+                }
+            }
+        }
+        finally
+        {
+            pool.shutdownNow();
+            launcher.progress.finish();
+        }
+
+        launcher.setPercentage(65);
+        if (failures.length() > 0)
+        {
+            throw new Exception("Unable to extract " + failures);
+        }
+    }
+
+    protected void extractJar(String path, String filename) throws Exception
+    {
+        ArtifactFormat format = ArtifactFormat.parse(filename);
+        if (format.isCompressed())
+        {
+            extractLZMA(path + filename, path + format.getUnpackedName());
+        }
+        if (format.isPacked())
+        {
+            extractPack(path + format.getUnpackedName(),
+                    path + format.getBaseName());
+        }
+    }
+
+    protected void extractNatives(String path) throws Exception
+    {
+        launcher.setState(State.EXTRACTING_PACKAGES);
+
+        final int initialPercentage = launcher.getPercentage();
+
+        URL nativeURL = urlList[(urlList.length - 1)];
+        final File nativeFolder = new File(path + "natives");
+        if (!nativeFolder.exists())
+        {
+            nativeFolder.mkdir();
+        }
+
+        final File file = new File(path + getJarName(nativeURL));
+        if (!file.exists())
+        {
+            return;
+        }
+
+        UpdateJournal journal = openJournal(path);
+        String sourceHash = journal.getHash(getFileName(nativeURL));
+        journal.close();
+
+        final NativesIndex index = new NativesIndex(nativeFolder);
+        if ((sourceHash != null) && (sourceHash.length() > 0)
+                && sourceHash.equals(index.getSource()) && index.isComplete())
+        {
+            return;
+        }
+
+        List<JarEntry> changed = new ArrayList<JarEntry>();
+        Set<String> names = new HashSet<String>();
+        long total = 0;
+        JarFile jarFile = new JarFile(file, true);
+        try
+        {
+            Enumeration<JarEntry> entities = jarFile.entries();
+            while (entities.hasMoreElements())
+            {
+                JarEntry entry = entities.nextElement();
+
+                if ((entry.isDirectory())
+                        || (entry.getName().indexOf('/') != -1))
+                {
+                    continue;
+                }
+                names.add(entry.getName());
+                if (!index.isCurrent(entry.getName(), entry.getCrc(),
+                        entry.getSize()))
+                {
+                    changed.add(entry);
+                    total += entry.getSize();
+                }
+            }
+        }
+        finally
+        {
+            jarFile.close();
+        }
+        index.retain(names);
+
+        totalSizeExtract = (int) total;
+        launcher.progress.begin(UpdateProgress.Phase.EXTRACTING, total);
+
+        final TransferListener listener = new TransferListener() {
+            public void bytesRead(int amount)
+            {
+                long current = launcher.progress.add(amount);
+
+                launcher.setPercentage(initialPercentage
+                        + (int) ((current * 20) / Math.max(totalSizeExtract, 1)));
+            }
+        };
+
+        int threads = Math.max(1, Math.min(changed.size(), Runtime
+                .getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Map<String, Future<Object>> tasks = new LinkedHashMap<String, Future<Object>>();
+
+        for (final JarEntry entry : changed)
+        {
+            tasks.put(entry.getName(), pool.submit(new Callable<Object>() {
+                public Object call() throws Exception
+                {
+                    launcher.progress.setFile(entry.getName());
+                    if (extractNative(file, entry, nativeFolder, listener))
+                    {
+                        index.put(entry.getName(), entry.getCrc(),
+                                entry.getSize());
+                    }
+                    return null;
+                }
+            }));
+        }
+        pool.shutdown();
+
+        StringBuilder failures = new StringBuilder();
+        try
+        {
+            for (Map.Entry<String, Future<Object>> task : tasks.entrySet())
+            {
+                try
+                {
+                    task.getValue().get();
+                }
+                catch (ExecutionException e)
+                {
+                    e.getCause().printStackTrace();
+                    failures.append(failures.length() > 0 ? ", " : "")
+                            .append(task.getKey()).append(" (")
+                            .append(e.getCause()).append(')');
+                }
+            }
+        }
+        finally
+        {
+            pool.shutdownNow();
+            launcher.progress.finish();
+        }
+
+        if (failures.length() > 0)
+        {
+            index.save();
+            throw new Exception("Unable to extract " + failures);
+        }
+        index.setSource(sourceHash);
+        index.save();
+    }
+
+    protected boolean extractNative(File file, JarEntry entry, File folder,
+            TransferListener listener) throws Exception
+    {
+        File target = new File(folder, entry.getName());
+        File temp = new File(folder, entry.getName() + ".tmp");
+
+        JarFile jarFile = new JarFile(file, true);
+        try
+        {
+            CheckedInputStream in = new CheckedInputStream(
+                    jarFile.getInputStream(jarFile.getEntry(entry.getName())),
+                    new CRC32());
+            try
+            {
+                ChannelIO.copy(in, temp, listener);
+            }
+            finally
+            {
+                in.close();
+            }
+
+            if ((entry.getCrc() != -1)
+                    && (in.getChecksum().getValue() != entry.getCrc()))
+            {
+                temp.delete();
+                throw new IOException("CRC mismatch for " + entry.getName());
+            }
+        }
+        finally
+        {
+            jarFile.close();
+        }
+
+        if ((target.exists()) && (!target.delete()))
+        {
+            temp.delete();
+            return false;
+        }
+        if (!temp.renameTo(target))
+        {
+            throw new IOException("Unable to move " + temp + " to " + target);
+        }
+        return true;
+    }
+
+    protected boolean needsRepack(String path)
+    {
+        String version = readInstalledVersion(new File(path + "version"));
+        return (version != null) && new File(path + "classorder").exists()
+                && !version.equals(readInstalledVersion(new File(path
+                        + "repacked")));
+    }
+
+    protected void repackJars(String path) throws Exception
+    {
+        if (!needsRepack(path))
+        {
+            return;
+        }
+        String version = readInstalledVersion(new File(path + "version"));
+        File order = new File(path + "classorder");
+        File marker = new File(path + "repacked");
+
+        launcher.setState(State.EXTRACTING_PACKAGES);
+        JarRepacker repacker = new JarRepacker(JarRepacker.readOrder(order));
+        boolean complete = true;
+
+        launcher.progress.begin(UpdateProgress.Phase.EXTRACTING,
+                urlList.length - 1);
+        try
+        {
+            for (int i = 0; i < (urlList.length - 1); i++)
+            {
+                File jar = new File(path + getJarName(urlList[i]));
+                launcher.progress.setFile(jar.getName());
+                if (jar.exists())
+                {
+                    try
+                    {
+                        if (repacker.repack(jar))
+                        {
+                            getChunkTreeFile(path, jar.getName()).delete();
+                        }
+                    }
+                    catch (IOException e)
+                    {
+                        e.printStackTrace();
+                        complete = false;
+                    }
+                }
+                launcher.progress.add(1);
+            }
+        }
+        finally
+        {
+            launcher.progress.finish();
+        }
+
+        if (complete)
+        {
+            writeVersionFile(marker, version);
+            order.delete();
+        }
+    }
+
+    protected String trimExtensionByCapabilities(String file)
+    {
+        return ArtifactFormat.negotiate(file,
+                launcherFrame.config.getStringList("updater.formats"));
+    }
+
+    protected String getJarName(URL url)
+    {
+        String fileName = url.getFile();
+        if (fileName.contains("?"))
+        {
+            fileName = fileName.substring(0, fileName.indexOf("?"));
+        }
+        fileName = ArtifactFormat.parse(fileName).getBaseName();
+        return fileName.substring(fileName.lastIndexOf('/') + 1);
+    }
+
+    protected void fatalErrorOccured(String error)
+    {
+        fatalError = true;
+        fatalErrorDescription = ("Fatal error occured ("
+                + (launcher == null ? State.INIT : launcher.getState())
+                + "): " + error);
+    }
+
+    private String readInstalledVersion(File versionFile)
+    {
+        if (!versionFile.exists())
+        {
+            return null;
+        }
+        try
+        {
+            return readVersionFile(versionFile);
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+
+    protected String readVersionFile(File file) throws Exception
+    {
+        DataInputStream dis = new DataInputStream(new FileInputStream(file));
+        String version = dis.readUTF();
+        dis.close();
+        return version;
+    }
+
+    protected void writeVersionFile(File file, String version) throws Exception
+    {
+        DataOutputStream dos = new DataOutputStream(new FileOutputStream(file));
+        dos.writeUTF(version);
+        dos.close();
+    }
+
+    protected String getFileName(URL url)
+    {
+        return Utils.getFileName(url);
+    }
+
+    protected void extractLZMA(String in, String out) throws Exception
+    {
+        File f = new File(in);
+        if (!f.exists())
+        {
+            return;
+        }
+        File outFile = new File(out);
+        outFile.delete();
+
+        if (XzDecoder.isXz(f))
+        {
+            new XzDecoder(f).decode(outFile, Runtime.getRuntime()
+                    .availableProcessors());
+        }
+        else
+        {
+            InputStream inputHandle = openLZMA(new FileInputStream(f));
+            try
+            {
+                ChannelIO.copy(inputHandle, outFile, null);
+            }
+            finally
+            {
+                inputHandle.close();
+            }
+        }
+
+        f.delete();
+    }
+
+    protected void extractPack(String in, String out) throws Exception
+    {
+        File f = new File(in);
+        if (!f.exists())
+        {
+            return;
+        }
+
+        File outFile = new File(out);
+        outFile.delete();
+        OutputStream fostream = new BufferedOutputStream(new FileOutputStream(
+                outFile), BufferPool.BUFFER_SIZE);
+        JarOutputStream jostream = new JarOutputStream(fostream);
+
+        try
+        {
+            Pack200Unpacker.unpack(f, jostream);
+        }
+        finally
+        {
+            jostream.close();
+        }
+
+        f.delete();
+    }
+
+    protected InputStream openLZMA(InputStream in) throws Exception
+    {
+        InputStream buffered = new BufferedInputStream(in,
+                BufferPool.BUFFER_SIZE);
+        byte[] header = new byte[XzFormat.STREAM_HEADER_SIZE];
+        buffered.mark(header.length);
+        int length = 0;
+        int read;
+        while ((length < header.length)
+                && ((read = buffered.read(header, length, header.length
+                        - length)) != -1))
+        {
+            length += read;
+        }
+        buffered.reset();
+
+        if (XzFormat.isXz(header, length))
+        {
+            return new XzInputStream(buffered);
+        }
+        return new LzmaInputStream(buffered);
+    }
+
+    protected boolean isStreamable(String filename)
+    {
+        if (!launcherFrame.config.getBoolean("updater.streamExtract"))
+        {
+            return false;
+        }
+        ArtifactFormat format = ArtifactFormat.parse(filename);
+        return !format.isPlain() && format.isSupported();
+    }
+
+    protected void extractStream(String filename, InputStream in, File out)
+            throws Exception
+    {
+        InputStream input = new FilterInputStream(in) {
+            @Override
+            public void close()
+            {
+            }
+        };
+        ArtifactFormat format = ArtifactFormat.parse(filename);
+        if (format.isCompressed())
+        {
+            input = openLZMA(input);
+        }
+
+        FileOutputStream output = new FileOutputStream(out);
+        try
+        {
+            if (format.isPacked())
+            {
+                JarOutputStream jostream = new JarOutputStream(
+                        new BufferedOutputStream(output,
+                                BufferPool.BUFFER_SIZE));
+                Pack200Unpacker.unpack(input, jostream);
+                jostream.close();
+            }
+            else
+            {
+                ChannelIO.copy(input, output.getChannel(), null);
+            }
+        }
+        finally
+        {
+            input.close();
+            output.close();
+        }
+    }
+
+    private class FileDownload
+    {
+        private static final int                  HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+        private final String                      path;
+        private final List<URL>                   sources;
+        private URL                               url;
+        private int                               source;
+        private final String                      currentFile;
+        private final int                         expectedSize;
+        private final String                      expectedMd5;
+        private final String                      expectedSha256;
+        private final String                      previousMd5;
+        private final ChunkTree                   expectedTree;
+        private final int                         initialPercentage;
+        private final PartialDownload             part;
+        private final AtomicInteger               progress                   = new AtomicInteger();
+        private final DownloadMetrics.FileMetrics fileMetrics;
+        private String                            etag;
+        private File                              installed;
+
+        public FileDownload(String path, URL url, int expectedSize,
+                String expectedMd5, String expectedSha256, String previousMd5,
+                ChunkTree expectedTree, int initialPercentage)
+        {
+            this.path = path;
+            sources = mirrors.getCandidates(url);
+            this.url = sources.get(0);
+            this.expectedSize = expectedSize;
+            this.expectedMd5 = expectedMd5;
+            this.expectedSha256 = expectedSha256;
+            this.previousMd5 = previousMd5;
+            this.expectedTree = expectedTree;
+            this.initialPercentage = initialPercentage;
+            currentFile = getFileName(url);
+            if (prefetcher != null)
+            {
+                prefetcher.handOver(currentFile, expectedMd5, new File(path
+                        + currentFile));
+            }
+            part = new PartialDownload(new File(path + currentFile));
+            fileMetrics = metrics.start(currentFile, this.url.getHost(),
+                    expectedSize);
+        }
+
+        public String run() throws Exception
+        {
+            try
+            {
+                return download();
+            }
+            finally
+            {
+                fileMetrics.finish();
+            }
+        }
+
+        private String download() throws Exception
+        {
+            int unsuccessfulAttempts = 0;
+            int maxUnsuccessfulAttempts = (retryPolicy.getAttempts() + sources
+                    .size()) - 1;
+
+            boolean streaming = isStreamable(currentFile);
+            installed = new File(path
+                    + (streaming ? getJarName(url) : currentFile));
+
+            boolean forceUpdate = launcherFrame.config
+                    .getString("force-update") != null;
+            if ((store != null) && !forceUpdate
+                    && store.fetch(expectedMd5, installed))
+            {
+                part.discard();
+                setProgress(expectedSize);
+                return expectedMd5;
+            }
+
+            if (!forceUpdate && promotePrefetched(installed, streaming))
+            {
+                part.discard();
+                setProgress(expectedSize);
+                if (store != null)
+                {
+                    store.put(expectedMd5, installed);
+                }
+                return expectedMd5;
+            }
+
+            if (!forceUpdate && !streaming && repairChunks(installed))
+            {
+                part.discard();
+                setProgress(expectedSize);
+                if (store != null)
+                {
+                    store.put(expectedMd5, installed);
+                }
+                return expectedMd5;
+            }
+
+            if (!forceUpdate && !streaming && applyPatch(installed))
+            {
+                part.discard();
+                setProgress(expectedSize);
+                if (store != null)
+                {
+                    store.put(expectedMd5, installed);
+                }
+                return expectedMd5;
+            }
+
+            String rebuilt = forceUpdate || streaming ? null
+                    : applyEntryUpdate(installed);
+            if (rebuilt != null)
+            {
+                part.discard();
+                setProgress(expectedSize);
+                if (store != null)
+                {
+                    store.put(rebuilt, installed);
+                }
+                return rebuilt;
+            }
+
+            if (streaming)
+            {
+                part.discard();
+            }
+
+            while (true)
+            {
+                selectAvailableSource();
+                boolean succeeded = false;
+                try
+                {
+                    succeeded = streaming ? attemptStreaming() : attempt();
+                }
+                finally
+                {
+                    if (!succeeded)
+                    {
+                        retryPolicy.failed(url);
+                    }
+                }
+                if (succeeded)
+                {
+                    retryPolicy.succeeded(url);
+                    break;
+                }
+
+                URL failed = url;
+                switchSource();
+                unsuccessfulAttempts++;
+                if (unsuccessfulAttempts >= maxUnsuccessfulAttempts)
+                {
+                    throw new Exception("failed to download " + currentFile);
+                }
+                retryPolicy.backoff(failed, url, unsuccessfulAttempts);
+            }
+
+            if (store != null)
+            {
+                store.put(etag, installed);
+            }
+            return etag;
+        }
+
+        public File getInstalled()
+        {
+            return installed;
+        }
+
+        private boolean attempt() throws Exception
+        {
+            boolean resume = false;
+            boolean segmented = false;
+            boolean encoded = false;
+            etag = "";
+
+            try
+            {
+                if (completePart())
+                {
+                    return true;
+                }
+
+                URLConnection urlconnection = http.open(url);
+                int segmentLength = (urlconnection instanceof HttpURLConnection)
+                        && !part.canResume() ? probeSegments() : -1;
+                segmented = segmentLength >= 0;
+                if (!segmented
+                        && (urlconnection instanceof HttpURLConnection))
+                {
+                    if (part.canResume())
+                    {
+                        urlconnection.setRequestProperty("Range", "bytes="
+                                + part.getOffset() + "-");
+                        urlconnection.setRequestProperty("If-Range", "\""
+                                + part.getETag() + "\"");
+                    }
+                    else if (currentFile.endsWith(".jar")
+                            && launcherFrame.config
+                                    .getBoolean("updater.acceptEncoding"))
+                    {
+                        http.acceptEncoding(urlconnection);
+                    }
+
+                    urlconnection.connect();
+
+                    int code = http.getResponseCode(urlconnection);
+                    if (part.canResume()
+                            && (code == HTTP_RANGE_NOT_SATISFIABLE))
+                    {
+                        http.release(urlconnection);
+                        part.discard();
+                        return attempt();
+                    }
+
+                    encoded = http.isEncoded(urlconnection);
+                    etag = encoded ? null : urlconnection
+                            .getHeaderField("ETag");
+                    if (etag != null)
+                    {
+                        etag = etag.substring(1, etag.length() - 1);
+                    }
+                    resume = part.canResume()
+                            && (code == HttpURLConnection.HTTP_PARTIAL);
+                }
+                if ((etag == null) || (etag.length() == 0))
+                {
+                    etag = expectedMd5;
+                }
+
+                long from = resume ? part.getOffset() : 0;
+                setProgress(from);
+
+                int fileSize;
+                MessageDigest[] digests = createDigests();
+
+                if (segmented)
+                {
+                    fileSize = downloadSegmented(segmentLength);
+                    Digests.update(part.getPartFile(), digests);
+                }
+                else
+                {
+                    if (resume)
+                    {
+                        part.digestExisting(digests);
+                    }
+                    InputStream inputstream = http
+                            .getInputStream(urlconnection);
+                    fileSize = (int) transfer(inputstream,
+                            part.open(from, etag).getChannel(),
+                            new HashPipeline(digests));
+                }
+
+                if (!(urlconnection instanceof HttpURLConnection)
+                        || (verify(digests) && ((fileSize == expectedSize) || (expectedSize <= 0))))
+                {
+                    part.complete();
+                    return true;
+                }
+
+                if (segmented || (fileSize >= expectedSize))
+                {
+                    part.discard();
+                }
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+                if (segmented)
+                {
+                    part.discard();
+                }
+            }
+
+            setProgress(part.getOffset());
+            return false;
+        }
+
+        private int probeSegments() throws IOException
+        {
+            int threshold = launcherFrame.config.getInteger(
+                    "updater.segmentThreshold", 1048576);
+            if ((threshold <= 0)
+                    || ((expectedSize > 0) && (expectedSize < threshold)))
+            {
+                return -1;
+            }
+
+            URLConnection probe = http.head(url);
+            try
+            {
+                int contentLength = probe.getContentLength();
+                if ((http.getResponseCode(probe) != HttpURLConnection.HTTP_OK)
+                        || !shouldSegment(probe, contentLength))
+                {
+                    return -1;
+                }
+                String header = probe.getHeaderField("ETag");
+                etag = (header != null) && (header.length() > 2) ? header
+                        .substring(1, header.length() - 1) : "";
+                return contentLength;
+            }
+            finally
+            {
+                http.release(probe);
+            }
+        }
+
+        private boolean completePart() throws Exception
+        {
+            if (!part.canResume() || (expectedSize <= 0)
+                    || (part.getOffset() < expectedSize))
+            {
+                return false;
+            }
+
+            if (part.getOffset() == expectedSize)
+            {
+                etag = part.getETag();
+                MessageDigest[] digests = createDigests();
+                part.digestExisting(digests);
+                if (verify(digests))
+                {
+                    part.complete();
+                    setProgress(expectedSize);
+                    return true;
+                }
+                etag = "";
+            }
+            part.discard();
+            return false;
+        }
+
+        private boolean promotePrefetched(File installed, boolean streaming)
+        {
+            File staged = prefetcher == null ? null : prefetcher.take(
+                    currentFile, expectedMd5);
+            if (staged == null)
+            {
+                return false;
+            }
+
+            File temp = new File(installed.getPath() + ".extract");
+            try
+            {
+                if (streaming)
+                {
+                    InputStream in = new FileInputStream(staged);
+                    try
+                    {
+                        extractStream(currentFile, in, temp);
+                    }
+                    finally
+                    {
+                        in.close();
+                    }
+                    staged.delete();
+                    staged = temp;
+                }
+                if ((!installed.exists() || installed.delete())
+                        && staged.renameTo(installed))
+                {
+                    return true;
+                }
+            }
+            catch (Exception e)
+            {
+                e.printStackTrace();
+            }
+
+            staged.delete();
+            temp.delete();
+            return false;
+        }
+
+        private boolean repairChunks(File installed)
+        {
+            if ((expectedTree == null) || (expectedMd5 == null)
+                    || !installed.exists())
+            {
+                return false;
+            }
+
+            File temp = new File(installed.getPath() + ".repair");
+            try
+            {
+                List<Integer> damaged = expectedTree.findDamaged(ChunkTree
+                        .compute(installed, expectedTree.getChunkSize(),
+                                Runtime.getRuntime().availableProcessors()));
+                if ((damaged.size() * 2) > expectedTree.getChunkCount())
+                {
+                    return false;
+                }
+                if (damaged.isEmpty())
+                {
+                    return Digests.md5(installed).equals(expectedMd5);
+                }
+
+                ChannelIO.copy(installed, temp);
+                RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+                try
+                {
+                    raf.setLength(expectedTree.getSize());
+                    for (int i = 0; i < damaged.size(); i++)
+                    {
+                        int first = damaged.get(i);
+                        while (((i + 1) < damaged.size())
+                                && (damaged.get(i + 1) == (damaged.get(i) + 1)))
+                        {
+                            i++;
+                        }
+                        int last = damaged.get(i);
+                        fetchRange(raf, expectedTree.getOffset(first),
+                                expectedTree.getOffset(last)
+                                        + expectedTree.getLength(last) - 1);
+                    }
+                }
+                finally
+                {
+                    raf.close();
+                }
+
+                if (Digests.md5(temp).equals(expectedMd5)
+                        && installed.delete() && temp.renameTo(installed))
+                {
+                    return true;
+                }
+            }
+            catch (Exception e)
+            {
+                e.printStackTrace();
+            }
+
+            temp.delete();
+            setProgress(0);
+            return false;
+        }
+
+        private void fetchRange(RandomAccessFile raf, long from, long to)
+                throws IOException
+        {
+            URLConnection urlconnection = http.open(url);
+            urlconnection.setRequestProperty("Range", "bytes=" + from + "-"
+                    + to);
+            if (http.getResponseCode(urlconnection) != HttpURLConnection.HTTP_PARTIAL)
+            {
+                http.release(urlconnection);
+                throw new IOException("Range request refused by "
+                        + url.getHost());
+            }
+
+            InputStream in = http.getInputStream(urlconnection);
+            try
+            {
+                byte[] buffer = new byte[BufferPool.BUFFER_SIZE];
+                long position = from;
+                int read;
+                while ((position <= to) && ((read = in.read(buffer)) != -1))
+                {
+                    int length = (int) Math.min(read, (to - position) + 1);
+                    raf.seek(position);
+                    raf.write(buffer, 0, length);
+                    position += length;
+                    report(length);
+                }
+                if (position <= to)
+                {
+                    throw new IOException("Truncated range from "
+                            + url.getHost());
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+
+        private boolean applyPatch(File installed)
+        {
+            if ((expectedMd5 == null) || (previousMd5 == null)
+                    || (previousMd5.length() == 0) || !installed.exists())
+            {
+                return false;
+            }
+
+            File temp = new File(installed.getPath() + ".patched");
+            try
+            {
+                URL patchURL = getPatchURL(currentFile);
+                if (patchURL == null)
+                {
+                    return false;
+                }
+
+                File base = installed;
+                if (!Digests.md5(installed).equals(previousMd5))
+                {
+                    base = store == null ? null : store.getEntry(previousMd5,
+                            installed.getName());
+                    if ((base == null) || !base.exists())
+                    {
+                        return false;
+                    }
+                }
+
+                URLConnection urlconnection = http.open(patchURL);
+                if (http.getResponseCode(urlconnection) != HttpURLConnection.HTTP_OK)
+                {
+                    http.release(urlconnection);
+                    return false;
+                }
+
+                InputStream patch = new CountingInputStream(
+                        http.getInputStream(urlconnection), null,
+                        new TransferListener() {
+                            public void bytesRead(int amount)
+                            {
+                                report(amount);
+                            }
+                        });
+                try
+                {
+                    DeltaPatch.apply(base, patch, temp);
+                }
+                finally
+                {
+                    patch.close();
+                }
+
+                if (Digests.md5(temp).equals(expectedMd5)
+                        && installed.delete() && temp.renameTo(installed))
+                {
+                    return true;
+                }
+            }
+            catch (Exception e)
+            {
+                e.printStackTrace();
+            }
+
+            temp.delete();
+            setProgress(0);
+            return false;
+        }
+
+        private String applyEntryUpdate(File installed)
+        {
+            if (!installed.exists() || !currentFile.endsWith(".jar"))
+            {
+                return null;
+            }
+
+            File temp = new File(installed.getPath() + ".rebuilt");
+            try
+            {
+                URL listingURL = getEntryURL(currentFile, null);
+                if (listingURL == null)
+                {
+                    return null;
+                }
+
+                EntryListing listing = EntryListing.load(http, listingURL);
+                if ((expectedMd5 != null)
+                        && !expectedMd5.equals(listing.getMd5()))
+                {
+                    return null;
+                }
+
+                final TransferListener listener = new TransferListener() {
+                    public void bytesRead(int amount)
+                    {
+                        report(amount);
+                    }
+                };
+                new IncrementalJar(installed, listing).rebuild(temp,
+                        new IncrementalJar.EntrySource() {
+                            public InputStream open(EntryListing.Entry entry)
+                                    throws IOException
+                            {
+                                try
+                                {
+                                    return new CountingInputStream(
+                                            http.get(getEntryURL(currentFile,
+                                                    entry)), null, listener);
+                                }
+                                catch (IOException e)
+                                {
+                                    throw e;
+                                }
+                                catch (Exception e)
+                                {
+                                    throw new IOException(e.toString());
+                                }
+                            }
+                        });
+
+                if ((temp.length() == listing.getSize())
+                        && Digests.md5(temp).equals(listing.getMd5())
+                        && installed.delete() && temp.renameTo(installed))
+                {
+                    return listing.getMd5();
+                }
+            }
+            catch (Exception e)
+            {
+                e.printStackTrace();
+            }
+
+            temp.delete();
+            setProgress(0);
+            return null;
+        }
+
+        private boolean attemptStreaming() throws Exception
+        {
+            File target = new File(path + getJarName(url));
+            File temp = new File(target.getPath() + ".extract");
+            etag = "";
+
+            try
+            {
+                URLConnection urlconnection = http.open(url);
+                if ((urlconnection instanceof HttpURLConnection))
+                {
+                    urlconnection.connect();
+
+                    etag = urlconnection.getHeaderField("ETag");
+                    if (etag != null)
+                    {
+                        etag = etag.substring(1, etag.length() - 1);
+                    }
+                }
+                if ((etag == null) || (etag.length() == 0))
+                {
+                    etag = expectedMd5;
+                }
+
+                MessageDigest[] digests = createDigests();
+                InputStream raw = http.getInputStream(urlconnection);
+                if (digests.length > 1)
+                {
+                    raw = new CountingInputStream(raw, digests[1], null);
+                }
+                CountingInputStream inputstream = new CountingInputStream(raw,
+                        digests[0],
+                        new TransferListener() {
+                            public void bytesRead(int amount)
+                            {
+                                report(amount);
+                            }
+                        });
+                try
+                {
+                    extractStream(currentFile, inputstream, temp);
+                    inputstream.drain();
+                }
+                finally
+                {
+                    inputstream.close();
+                }
+
+                long fileSize = inputstream.getCount();
+
+                if (!(urlconnection instanceof HttpURLConnection)
+                        || (verify(digests) && ((fileSize == expectedSize) || (expectedSize <= 0))))
+                {
+                    if ((target.exists() && !target.delete())
+                            || !temp.renameTo(target))
+                    {
+                        throw new IOException("Unable to move " + temp
+                                + " to " + target);
+                    }
+                    return true;
+                }
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+
+            temp.delete();
+            setProgress(0);
+            return false;
+        }
+
+        private MessageDigest[] createDigests() throws Exception
+        {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            if (expectedSha256 == null)
+            {
+                return new MessageDigest[] { md5 };
+            }
+            return new MessageDigest[] { md5,
+                    MessageDigest.getInstance("SHA-256") };
+        }
+
+        private boolean verify(MessageDigest[] digests)
+        {
+            if ((etag != null) && !Digests.matches(digests[0].digest(), etag))
+            {
+                return false;
+            }
+            return (digests.length == 1)
+                    || Digests.matches(digests[1].digest(), expectedSha256);
+        }
+
+        private long transfer(InputStream inputstream, FileChannel out,
+                HashPipeline pipeline) throws IOException
+        {
+            ReadableByteChannel in = Channels.newChannel(inputstream);
+            ByteBuffer buffer = BufferPool.acquire();
+            long transferStartTime = System.currentTimeMillis();
+            long fileSize = part.getOffset();
+            long startOffset = fileSize;
+            long lastCheckpoint = fileSize;
+
+            try
+            {
+                int bufferSize;
+                while ((bufferSize = in.read(buffer)) != -1)
+                {
+                    buffer.flip();
+                    ChannelIO.write(out, buffer);
+                    pipeline.submit(buffer);
+                    buffer = BufferPool.acquire();
+
+                    fileSize += bufferSize;
+                    report(bufferSize);
+
+                    if ((fileSize - lastCheckpoint) >= 1048576)
+                    {
+                        part.checkpoint(fileSize);
+                        lastCheckpoint = fileSize;
+                    }
+                }
+                mirrors.record(url, fileSize - startOffset,
+                        System.currentTimeMillis() - transferStartTime);
+            }
+            finally
+            {
+                BufferPool.release(buffer);
+                pipeline.finish();
+                inputstream.close();
+                out.close();
+                part.checkpoint(fileSize);
+            }
+            return fileSize;
+        }
+
+        private int downloadSegmented(int contentLength) throws IOException
+        {
+            SegmentedDownload download = new SegmentedDownload(http, url,
+                    part.getPartFile(), contentLength,
+                    launcherFrame.config.getInteger("updater.segments", 4));
+            download.setListener(new TransferListener() {
+                public void bytesRead(int amount)
+                {
+                    report(amount);
+                }
+            });
+            download.run();
+            return (int) download.getTransferred();
+        }
+
+        private void selectAvailableSource() throws InterruptedException
+        {
+            int candidate = retryPolicy.select(sources, source);
+            if (candidate != source)
+            {
+                source = candidate;
+                url = sources.get(source);
+                fileMetrics.moved(url.getHost());
+            }
+        }
+
+        private void switchSource()
+        {
+            mirrors.failed(url);
+            if (sources.size() > 1)
+            {
+                source = (source + 1) % sources.size();
+                url = sources.get(source);
+            }
+            fileMetrics.retried(url.getHost());
+        }
+
+        private void report(int amount)
+        {
+            progress.addAndGet(amount);
+            fileMetrics.add(amount);
+            launcher.progress.setFile(currentFile);
+            addDownloadProgress(initialPercentage, amount);
+        }
+
+        private void setProgress(long bytes)
+        {
+            addDownloadProgress(initialPercentage,
+                    (int) bytes - progress.getAndSet((int) bytes));
+        }
+    }
 }
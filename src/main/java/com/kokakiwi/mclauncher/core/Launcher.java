@@ -20,6 +20,8 @@ import java.util.Map;
 import javax.imageio.ImageIO;
 
 import com.kokakiwi.mclauncher.LauncherFrame;
+import com.kokakiwi.mclauncher.core.updater.DownloadMetrics;
+import com.kokakiwi.mclauncher.core.updater.UpdateProgress;
 import com.kokakiwi.mclauncher.utils.State;
 import com.kokakiwi.mclauncher.utils.Utils;
 
@@ -41,7 +43,12 @@ public class Launcher extends Applet implements Runnable, AppletStub,
     private State               state            = State.INIT;
     private boolean             hasMouseListener;
     public String               subtaskMessage   = "";
+    public final UpdateProgress progress         = new UpdateProgress();
     public Map<String, String>  customParameters = new HashMap<String, String>();
+    private String              retrievingLabel;
+    private String              extractingLabel;
+    private String              stalledLabel;
+    private String              remainingLabel;
 
     public Launcher(LauncherFrame launcherFrame)
     {
@@ -324,7 +331,8 @@ public class Launcher extends Applet implements Runnable, AppletStub,
 
             g.drawString(msg, (w / 2) - (fm.stringWidth(msg) / 2), (h / 2)
                     + (fm.getHeight() * 1));
-            msg = subtaskMessage;
+            msg = updater.fatalError ? subtaskMessage
+                    : getProgressMessage();
             g.drawString(msg, (w / 2) - (fm.stringWidth(msg) / 2), (h / 2)
                     + (fm.getHeight() * 2));
 
@@ -345,6 +353,56 @@ public class Launcher extends Applet implements Runnable, AppletStub,
         g2.drawImage(img, 0, 0, w * 2, h * 2, null);
     }
 
+    private String getProgressMessage()
+    {
+        UpdateProgress.Phase phase = progress.getPhase();
+        if (phase == UpdateProgress.Phase.IDLE)
+        {
+            return subtaskMessage;
+        }
+
+        if (retrievingLabel == null)
+        {
+            retrievingLabel = launcherFrame.locale
+                    .getString("updater.retrieving");
+            extractingLabel = launcherFrame.locale
+                    .getString("updater.extracting");
+            stalledLabel = launcherFrame.locale.getString("updater.stalled");
+            remainingLabel = launcherFrame.locale
+                    .getString("updater.remaining");
+        }
+
+        StringBuilder msg = new StringBuilder();
+        msg.append(phase == UpdateProgress.Phase.DOWNLOADING ? retrievingLabel
+                : extractingLabel);
+        msg.append(": ").append(progress.getFile()).append(' ')
+                .append(progress.getPercent()).append('%');
+        if (phase == UpdateProgress.Phase.DOWNLOADING)
+        {
+            DownloadMetrics metrics = updater.getMetrics();
+            if (metrics.isStalled())
+            {
+                msg.append(" (").append(stalledLabel).append(')');
+            }
+            else if (metrics.getRate() > 0)
+            {
+                msg.append(" @ ").append((long) (metrics.getRate() / 1024))
+                        .append(" KB/sec");
+                long eta = metrics.getEta(progress.getTotal()
+                        - progress.getDone());
+                if (eta >= 0)
+                {
+                    eta /= 1000L;
+                    msg.append(", ").append(eta / 60).append(':')
+                            .append((eta % 60) < 10 ? "0" : "")
+                            .append(eta % 60).append(' ')
+                            .append(remainingLabel);
+                }
+            }
+        }
+        return msg.toString();
+    }
+
     private String getDescriptionForState()
     {
         if (state.getDescription() != null)
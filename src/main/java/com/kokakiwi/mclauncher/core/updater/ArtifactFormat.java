@@ -0,0 +1,115 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.util.List;
+
+public class ArtifactFormat
+{
+    public static final String    PACK         = ".pack";
+    public static final String    XZ           = ".xz";
+    public static final String    LZMA         = ".lzma";
+
+    private static final String[] COMPRESSIONS = { XZ, LZMA };
+
+    private final String          baseName;
+    private final boolean         packed;
+    private final String          compression;
+
+    private ArtifactFormat(String baseName, boolean packed, String compression)
+    {
+        this.baseName = baseName;
+        this.packed = packed;
+        this.compression = compression;
+    }
+
+    public static ArtifactFormat parse(String fileName)
+    {
+        String compression = "";
+        for (String suffix : COMPRESSIONS)
+        {
+            if (fileName.endsWith(suffix))
+            {
+                compression = suffix;
+                fileName = fileName.substring(0, fileName.length()
+                        - suffix.length());
+                break;
+            }
+        }
+
+        boolean packed = fileName.endsWith(PACK);
+        if (packed)
+        {
+            fileName = fileName.substring(0, fileName.length() - PACK.length());
+        }
+        return new ArtifactFormat(fileName, packed, compression);
+    }
+
+    public static String negotiate(String url, List<String> preferred)
+    {
+        String query = "";
+        int index = url.indexOf('?');
+        if (index != -1)
+        {
+            query = url.substring(index);
+            url = url.substring(0, index);
+        }
+
+        ArtifactFormat format = parse(url);
+        if ((preferred != null) && !preferred.isEmpty())
+        {
+            for (String suffix : preferred)
+            {
+                ArtifactFormat candidate = parse(format.baseName
+                        + ((suffix.length() == 0) || suffix.startsWith(".") ? suffix
+                                : "." + suffix));
+                if (candidate.baseName.equals(format.baseName)
+                        && candidate.isSupported())
+                {
+                    return candidate.getName() + query;
+                }
+            }
+            return format.baseName + query;
+        }
+
+        if (format.packed && !Pack200Unpacker.isAvailable())
+        {
+            format = new ArtifactFormat(format.baseName, false,
+                    format.compression);
+        }
+        return format.getName() + query;
+    }
+
+    public String getBaseName()
+    {
+        return baseName;
+    }
+
+    public String getName()
+    {
+        return baseName + (packed ? PACK : "") + compression;
+    }
+
+    public String getUnpackedName()
+    {
+        return baseName + (packed ? PACK : "");
+    }
+
+    public boolean isPacked()
+    {
+        return packed;
+    }
+
+    public boolean isCompressed()
+    {
+        return compression.length() > 0;
+    }
+
+    public boolean isPlain()
+    {
+        return !packed && !isCompressed();
+    }
+
+    public boolean isSupported()
+    {
+        return !packed || Pack200Unpacker.isAvailable();
+    }
+}
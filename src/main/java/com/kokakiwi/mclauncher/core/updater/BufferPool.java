@@ -0,0 +1,39 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BufferPool
+{
+    public static final int                BUFFER_SIZE = 65536;
+    private static final int               MAX_POOLED  = 32;
+
+    private static final Queue<ByteBuffer> buffers     = new ConcurrentLinkedQueue<ByteBuffer>();
+    private static final AtomicInteger     pooled      = new AtomicInteger();
+
+    public static ByteBuffer acquire()
+    {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null)
+        {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        pooled.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    public static void release(ByteBuffer buffer)
+    {
+        if (pooled.incrementAndGet() <= MAX_POOLED)
+        {
+            buffers.offer(buffer);
+        }
+        else
+        {
+            pooled.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+public class ChannelIO
+{
+    public static long copy(InputStream in, File file,
+            TransferListener listener) throws IOException
+    {
+        FileOutputStream fos = new FileOutputStream(file);
+        try
+        {
+            return copy(in, fos.getChannel(), listener);
+        }
+        finally
+        {
+            fos.close();
+        }
+    }
+
+    public static long copy(File from, File to) throws IOException
+    {
+        FileInputStream fis = new FileInputStream(from);
+        try
+        {
+            return copy(fis, to, null);
+        }
+        finally
+        {
+            fis.close();
+        }
+    }
+
+    public static long copy(InputStream in, FileChannel out,
+            TransferListener listener) throws IOException
+    {
+        if ((in instanceof FileInputStream) && (listener == null))
+        {
+            FileChannel source = ((FileInputStream) in).getChannel();
+            long start = out.position();
+            long size = source.size() - source.position();
+            long position = 0;
+            while (position < size)
+            {
+                long transferred = out.transferFrom(source, start + position,
+                        size - position);
+                if (transferred <= 0)
+                {
+                    break;
+                }
+                position += transferred;
+            }
+            out.position(start + position);
+            return position;
+        }
+
+        ReadableByteChannel source = Channels.newChannel(in);
+        ByteBuffer buffer = BufferPool.acquire();
+        long total = 0;
+        try
+        {
+            int read;
+            while ((read = source.read(buffer)) != -1)
+            {
+                buffer.flip();
+                write(out, buffer);
+                buffer.clear();
+
+                total += read;
+                if (listener != null)
+                {
+                    listener.bytesRead(read);
+                }
+            }
+        }
+        finally
+        {
+            BufferPool.release(buffer);
+        }
+        return total;
+    }
+
+    public static void write(FileChannel out, ByteBuffer buffer)
+            throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            out.write(buffer);
+        }
+    }
+}
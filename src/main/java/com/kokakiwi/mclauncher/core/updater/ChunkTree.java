@@ -0,0 +1,293 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ChunkTree
+{
+    private final long     size;
+    private final int      chunkSize;
+    private final byte[][] leaves;
+
+    public ChunkTree(long size, int chunkSize, byte[][] leaves)
+    {
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.leaves = leaves;
+    }
+
+    public static int getChunkCount(long size, int chunkSize)
+    {
+        return (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+    }
+
+    public static ChunkTree fromHex(long size, int chunkSize, List<String> hashes)
+    {
+        if ((size < 0) || (chunkSize <= 0) || (hashes == null)
+                || (hashes.size() != getChunkCount(size, chunkSize)))
+        {
+            return null;
+        }
+
+        byte[][] leaves = new byte[hashes.size()][];
+        for (int i = 0; i < leaves.length; i++)
+        {
+            String hex = hashes.get(i);
+            if ((hex == null) || (hex.length() != 32))
+            {
+                return null;
+            }
+            leaves[i] = new byte[16];
+            for (int j = 0; j < 16; j++)
+            {
+                int high = Character.digit(hex.charAt(j * 2), 16);
+                int low = Character.digit(hex.charAt((j * 2) + 1), 16);
+                if ((high < 0) || (low < 0))
+                {
+                    return null;
+                }
+                leaves[i][j] = (byte) ((high << 4) | low);
+            }
+        }
+        return new ChunkTree(size, chunkSize, leaves);
+    }
+
+    public static ChunkTree compute(File file, int chunkSize, int threads)
+            throws IOException
+    {
+        final long size = file.length();
+        final int chunk = chunkSize;
+        final int count = getChunkCount(size, chunkSize);
+        final byte[][] leaves = new byte[count][];
+        final int workers = Math.max(1, Math.min(threads, count));
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try
+        {
+            final FileChannel channel = raf.getChannel();
+            List<Future<Object>> tasks = new ArrayList<Future<Object>>();
+            for (int w = 0; w < workers; w++)
+            {
+                final int first = w;
+                tasks.add(pool.submit(new Callable<Object>() {
+                    public Object call() throws Exception
+                    {
+                        MessageDigest md5 = MessageDigest.getInstance("MD5");
+                        ByteBuffer buffer = ByteBuffer.allocate(chunk);
+                        for (int i = first; i < count; i += workers)
+                        {
+                            long offset = (long) i * chunk;
+                            buffer.clear();
+                            buffer.limit((int) Math.min(chunk, size - offset));
+                            while (buffer.hasRemaining())
+                            {
+                                if (channel.read(buffer,
+                                        offset + buffer.position()) == -1)
+                                {
+                                    throw new IOException("File changed while hashing");
+                                }
+                            }
+                            md5.update(buffer.array(), 0, buffer.limit());
+                            leaves[i] = md5.digest();
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<Object> task : tasks)
+            {
+                task.get();
+            }
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException)
+            {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Unable to hash " + file + ": "
+                    + e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            throw new IOException("Interrupted while hashing " + file);
+        }
+        finally
+        {
+            pool.shutdownNow();
+            raf.close();
+        }
+        return new ChunkTree(size, chunkSize, leaves);
+    }
+
+    public static ChunkTree load(File file, String hash)
+    {
+        if (!file.exists() || (hash == null))
+        {
+            return null;
+        }
+        try
+        {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try
+            {
+                if (!hash.equals(in.readUTF()))
+                {
+                    return null;
+                }
+                long size = in.readLong();
+                int chunkSize = in.readInt();
+                int count = in.readInt();
+                if ((chunkSize <= 0) || (count != getChunkCount(size, chunkSize)))
+                {
+                    return null;
+                }
+
+                byte[][] leaves = new byte[count][16];
+                for (byte[] leaf : leaves)
+                {
+                    in.readFully(leaf);
+                }
+                ChunkTree tree = new ChunkTree(size, chunkSize, leaves);
+
+                byte[] root = new byte[16];
+                in.readFully(root);
+                return Arrays.equals(root, tree.getRoot()) ? tree : null;
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    public void save(File file, String hash) throws IOException
+    {
+        file.getParentFile().mkdirs();
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(temp));
+        try
+        {
+            out.writeUTF(hash);
+            out.writeLong(size);
+            out.writeInt(chunkSize);
+            out.writeInt(leaves.length);
+            for (byte[] leaf : leaves)
+            {
+                out.write(leaf);
+            }
+            out.write(getRoot());
+        }
+        finally
+        {
+            out.close();
+        }
+
+        if ((file.exists() && !file.delete()) || !temp.renameTo(file))
+        {
+            temp.delete();
+            throw new IOException("Unable to replace " + file);
+        }
+    }
+
+    public long getSize()
+    {
+        return size;
+    }
+
+    public int getChunkSize()
+    {
+        return chunkSize;
+    }
+
+    public int getChunkCount()
+    {
+        return leaves.length;
+    }
+
+    public long getOffset(int chunk)
+    {
+        return (long) chunk * chunkSize;
+    }
+
+    public long getLength(int chunk)
+    {
+        return Math.min(chunkSize, size - getOffset(chunk));
+    }
+
+    public byte[] getRoot()
+    {
+        try
+        {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            byte[][] level = leaves;
+            while (level.length > 1)
+            {
+                byte[][] parents = new byte[(level.length + 1) / 2][];
+                for (int i = 0; i < parents.length; i++)
+                {
+                    if (((i * 2) + 1) < level.length)
+                    {
+                        md5.update(level[i * 2]);
+                        md5.update(level[(i * 2) + 1]);
+                        parents[i] = md5.digest();
+                    }
+                    else
+                    {
+                        parents[i] = level[i * 2];
+                    }
+                }
+                level = parents;
+            }
+            return level[0];
+        }
+        catch (Exception e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public List<Integer> findDamaged(ChunkTree actual)
+    {
+        List<Integer> damaged = new ArrayList<Integer>();
+        if ((actual.chunkSize == chunkSize) && (actual.size == size)
+                && Arrays.equals(actual.getRoot(), getRoot()))
+        {
+            return damaged;
+        }
+
+        for (int i = 0; i < leaves.length; i++)
+        {
+            if ((actual.chunkSize != chunkSize) || (i >= actual.leaves.length)
+                    || (actual.getLength(i) != getLength(i))
+                    || !Arrays.equals(actual.leaves[i], leaves[i]))
+            {
+                damaged.add(i);
+            }
+        }
+        return damaged;
+    }
+}
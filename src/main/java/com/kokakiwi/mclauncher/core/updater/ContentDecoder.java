@@ -0,0 +1,9 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface ContentDecoder
+{
+    public InputStream decode(InputStream in) throws IOException;
+}
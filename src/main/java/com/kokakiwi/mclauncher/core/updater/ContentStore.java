@@ -0,0 +1,174 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+public class ContentStore
+{
+    private final File root;
+
+    public ContentStore(File root)
+    {
+        this.root = root;
+    }
+
+    public File getRoot()
+    {
+        return root;
+    }
+
+    public File getEntry(String hash, String fileName)
+    {
+        String name = hash.toLowerCase() + getExtension(fileName);
+        return new File(new File(root, name.substring(0, 2)), name);
+    }
+
+    public boolean fetch(String hash, File target)
+    {
+        if (!isValid(hash))
+        {
+            return false;
+        }
+
+        File entry = getEntry(hash, target.getName());
+        if (!entry.exists())
+        {
+            return false;
+        }
+
+        try
+        {
+            if (!Digests.md5(entry).equals(readChecksum(entry)))
+            {
+                entry.delete();
+                getChecksumFile(entry).delete();
+                return false;
+            }
+
+            if (target.exists() && !target.delete())
+            {
+                return false;
+            }
+            if (!link(entry, target))
+            {
+                ChannelIO.copy(entry, target);
+            }
+            return true;
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+            target.delete();
+        }
+        return false;
+    }
+
+    public void put(String hash, File source)
+    {
+        if (!isValid(hash) || !source.exists())
+        {
+            return;
+        }
+
+        File entry = getEntry(hash, source.getName());
+        if (entry.exists())
+        {
+            return;
+        }
+
+        File temp = new File(entry.getPath() + "." + System.nanoTime()
+                + ".tmp");
+        try
+        {
+            entry.getParentFile().mkdirs();
+            if (!link(source, temp))
+            {
+                ChannelIO.copy(source, temp);
+            }
+            writeChecksum(entry, Digests.md5(temp));
+            if (!temp.renameTo(entry))
+            {
+                temp.delete();
+            }
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+            temp.delete();
+        }
+    }
+
+    public static boolean link(File existing, File link)
+    {
+        try
+        {
+            Method toPath = File.class.getMethod("toPath");
+            Class<?> pathClass = Class.forName("java.nio.file.Path");
+            Class.forName("java.nio.file.Files")
+                    .getMethod("createLink", pathClass, pathClass)
+                    .invoke(null, toPath.invoke(link),
+                            toPath.invoke(existing));
+            return true;
+        }
+        catch (Throwable e)
+        {
+            return false;
+        }
+    }
+
+    private static boolean isValid(String hash)
+    {
+        return (hash != null) && (hash.length() >= 8)
+                && (hash.indexOf('/') == -1) && (hash.indexOf('\\') == -1)
+                && (hash.indexOf('.') == -1);
+    }
+
+    private static String getExtension(String fileName)
+    {
+        int index = fileName.indexOf('.');
+        return index == -1 ? "" : fileName.substring(index);
+    }
+
+    private static File getChecksumFile(File entry)
+    {
+        return new File(entry.getPath() + ".md5");
+    }
+
+    private static String readChecksum(File entry) throws IOException
+    {
+        File file = getChecksumFile(entry);
+        if (!file.exists())
+        {
+            return null;
+        }
+        DataInputStream dis = new DataInputStream(new FileInputStream(file));
+        try
+        {
+            return dis.readUTF();
+        }
+        finally
+        {
+            dis.close();
+        }
+    }
+
+    private static void writeChecksum(File entry, String md5)
+            throws IOException
+    {
+        DataOutputStream dos = new DataOutputStream(new FileOutputStream(
+                getChecksumFile(entry)));
+        try
+        {
+            dos.writeUTF(md5);
+        }
+        finally
+        {
+            dos.close();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+
+public class CountingInputStream extends FilterInputStream
+{
+    private final MessageDigest    digest;
+    private final TransferListener listener;
+    private long                   count = 0;
+
+    public CountingInputStream(InputStream in, MessageDigest digest,
+            TransferListener listener)
+    {
+        super(in);
+        this.digest = digest;
+        this.listener = listener;
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        int b = super.read();
+        if (b != -1)
+        {
+            if (digest != null)
+            {
+                digest.update((byte) b);
+            }
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        int read = super.read(b, off, len);
+        if (read > 0)
+        {
+            if (digest != null)
+            {
+                digest.update(b, off, read);
+            }
+            count(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException
+    {
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        int read;
+        while ((skipped < n)
+                && ((read = read(buffer, 0,
+                        (int) Math.min(buffer.length, n - skipped))) != -1))
+        {
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return false;
+    }
+
+    public void drain() throws IOException
+    {
+        byte[] buffer = new byte[65536];
+        while (read(buffer, 0, buffer.length) != -1)
+        {
+        }
+    }
+
+    private void count(int amount)
+    {
+        count += amount;
+        if (listener != null)
+        {
+            listener.bytesRead(amount);
+        }
+    }
+}
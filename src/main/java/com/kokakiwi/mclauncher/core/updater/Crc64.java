@@ -0,0 +1,47 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.util.zip.Checksum;
+
+public class Crc64 implements Checksum
+{
+    private static final long[] TABLE = new long[256];
+
+    static
+    {
+        for (int i = 0; i < TABLE.length; i++)
+        {
+            long r = i;
+            for (int j = 0; j < 8; j++)
+            {
+                r = (r & 1) == 1 ? (r >>> 1) ^ 0xC96C5795D7870F42L : r >>> 1;
+            }
+            TABLE[i] = r;
+        }
+    }
+
+    private long                crc   = -1;
+
+    public void update(int b)
+    {
+        crc = TABLE[(int) ((crc ^ b) & 0xFF)] ^ (crc >>> 8);
+    }
+
+    public void update(byte[] b, int off, int len)
+    {
+        int end = off + len;
+        while (off < end)
+        {
+            crc = TABLE[(int) ((crc ^ b[off++]) & 0xFF)] ^ (crc >>> 8);
+        }
+    }
+
+    public long getValue()
+    {
+        return ~crc;
+    }
+
+    public void reset()
+    {
+        crc = -1;
+    }
+}
@@ -0,0 +1,101 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Patch layout: "MCPATCH1", target length (long), then operations until 0:
+// 1 offset(long) length(int) copies from the installed file,
+// 2 length(int) bytes inserts literal data.
+public class DeltaPatch
+{
+    public static final String MAGIC = "MCPATCH1";
+
+    private static final int   END   = 0;
+    private static final int   COPY  = 1;
+    private static final int   ADD   = 2;
+
+    public static void apply(File base, InputStream patch, File target)
+            throws IOException
+    {
+        DataInputStream in = new DataInputStream(patch);
+
+        byte[] magic = new byte[MAGIC.length()];
+        in.readFully(magic);
+        if (!MAGIC.equals(new String(magic, "US-ASCII")))
+        {
+            throw new IOException("Not a launcher delta patch");
+        }
+        long targetLength = in.readLong();
+
+        FileInputStream baseStream = new FileInputStream(base);
+        FileOutputStream targetStream = new FileOutputStream(target);
+        byte[] buffer = new byte[BufferPool.BUFFER_SIZE];
+        try
+        {
+            FileChannel source = baseStream.getChannel();
+            FileChannel out = targetStream.getChannel();
+            long baseLength = source.size();
+
+            int op;
+            while ((op = in.readUnsignedByte()) != END)
+            {
+                if (op == COPY)
+                {
+                    long offset = in.readLong();
+                    int length = in.readInt();
+                    if ((offset < 0) || (length < 0)
+                            || ((offset + length) > baseLength))
+                    {
+                        throw new IOException("Patch copies outside of "
+                                + base.getName());
+                    }
+
+                    long copied = 0;
+                    while (copied < length)
+                    {
+                        long transferred = source.transferTo(offset + copied,
+                                length - copied, out);
+                        if (transferred <= 0)
+                        {
+                            throw new IOException("Unable to read "
+                                    + base.getName());
+                        }
+                        copied += transferred;
+                    }
+                }
+                else if (op == ADD)
+                {
+                    int remaining = in.readInt();
+                    while (remaining > 0)
+                    {
+                        int chunk = Math.min(remaining, buffer.length);
+                        in.readFully(buffer, 0, chunk);
+                        ChannelIO.write(out, ByteBuffer.wrap(buffer, 0, chunk));
+                        remaining -= chunk;
+                    }
+                }
+                else
+                {
+                    throw new IOException("Unknown patch operation " + op);
+                }
+            }
+
+            if (out.size() != targetLength)
+            {
+                throw new IOException("Patched " + target.getName()
+                        + " has the wrong length");
+            }
+        }
+        finally
+        {
+            baseStream.close();
+            targetStream.close();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+
+public class Digests
+{
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    public static String toHex(byte[] digest)
+    {
+        char[] chars = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++)
+        {
+            chars[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+            chars[(i * 2) + 1] = HEX[digest[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    public static boolean matches(byte[] digest, String hex)
+    {
+        if ((hex == null) || (hex.length() != (digest.length * 2)))
+        {
+            return false;
+        }
+        for (int i = 0; i < digest.length; i++)
+        {
+            if ((Character.toLowerCase(hex.charAt(i * 2)) != HEX[(digest[i] >> 4) & 0xF])
+                    || (Character.toLowerCase(hex.charAt((i * 2) + 1)) != HEX[digest[i] & 0xF]))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static void update(File file, MessageDigest[] digests)
+            throws IOException
+    {
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            byte[] buffer = new byte[65536];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                for (MessageDigest digest : digests)
+                {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    public static String md5(File file) throws Exception
+    {
+        MessageDigest m = MessageDigest.getInstance("MD5");
+        update(file, new MessageDigest[] { m });
+        return toHex(m.digest());
+    }
+}
@@ -0,0 +1,196 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class DownloadMetrics
+{
+    private static final long       TIME_CONSTANT   = 3000;
+    private static final long       STALL_THRESHOLD = 5000;
+    private static final long       SAMPLE_INTERVAL = 250;
+
+    private final AtomicLong        transferred     = new AtomicLong();
+    private final AtomicLong        lastSample      = new AtomicLong();
+    private final RateEstimator     overall         = new RateEstimator(
+                                                            TIME_CONSTANT);
+    private final List<FileMetrics> files           = new CopyOnWriteArrayList<FileMetrics>();
+
+    public FileMetrics start(String name, String source, long size)
+    {
+        FileMetrics file = new FileMetrics(name, source, size);
+        files.add(file);
+        return file;
+    }
+
+    public void sample()
+    {
+        long now = System.currentTimeMillis();
+        lastSample.set(now);
+        overall.sample(transferred.get(), now);
+        for (FileMetrics file : files)
+        {
+            if (!file.isFinished())
+            {
+                file.estimator.sample(file.bytes.get(), now);
+            }
+        }
+    }
+
+    private void sampleIfDue()
+    {
+        long now = System.currentTimeMillis();
+        long last = lastSample.get();
+        if (((now - last) >= SAMPLE_INTERVAL)
+                && lastSample.compareAndSet(last, now))
+        {
+            sample();
+        }
+    }
+
+    public long getTransferred()
+    {
+        return transferred.get();
+    }
+
+    public double getRate()
+    {
+        sampleIfDue();
+        return overall.getRate();
+    }
+
+    public long getEta(long remaining)
+    {
+        sampleIfDue();
+        return overall.getEta(remaining);
+    }
+
+    public boolean isStalled()
+    {
+        sampleIfDue();
+        return overall.getIdleTime(System.currentTimeMillis()) >= STALL_THRESHOLD;
+    }
+
+    public List<FileMetrics> getFiles()
+    {
+        return new ArrayList<FileMetrics>(files);
+    }
+
+    public void print(PrintStream out)
+    {
+        for (FileMetrics file : files)
+        {
+            out.println("Downloaded " + file.getName() + " from "
+                    + file.getSource() + ": " + file.getBytes() + " bytes in "
+                    + file.getElapsed() + " ms ("
+                    + (long) file.getAverageRate() + " B/s, "
+                    + file.getRetries() + " retries)");
+        }
+    }
+
+    public class FileMetrics
+    {
+        private final String        name;
+        private final long          size;
+        private final long          started   = System.currentTimeMillis();
+        private final AtomicLong    bytes     = new AtomicLong();
+        private final AtomicInteger retries   = new AtomicInteger();
+        private final RateEstimator estimator = new RateEstimator(
+                                                      TIME_CONSTANT);
+        private volatile String     source;
+        private volatile long       finished;
+
+        private FileMetrics(String name, String source, long size)
+        {
+            this.name = name;
+            this.source = source;
+            this.size = size;
+        }
+
+        public void add(int amount)
+        {
+            bytes.addAndGet(amount);
+            transferred.addAndGet(amount);
+            sampleIfDue();
+        }
+
+        public void retried(String next)
+        {
+            retries.incrementAndGet();
+            source = next;
+        }
+
+        public void moved(String next)
+        {
+            source = next;
+        }
+
+        public void finish()
+        {
+            finished = System.currentTimeMillis();
+        }
+
+        public boolean isFinished()
+        {
+            return finished != 0;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public String getSource()
+        {
+            return source;
+        }
+
+        public long getSize()
+        {
+            return size;
+        }
+
+        public long getBytes()
+        {
+            return bytes.get();
+        }
+
+        public int getRetries()
+        {
+            return retries.get();
+        }
+
+        public long getElapsed()
+        {
+            return (finished != 0 ? finished : System.currentTimeMillis())
+                    - started;
+        }
+
+        public double getAverageRate()
+        {
+            return (bytes.get() * 1000.0) / Math.max(getElapsed(), 1);
+        }
+
+        public double getRate()
+        {
+            sampleIfDue();
+            return estimator.getRate();
+        }
+
+        public long getEta()
+        {
+            sampleIfDue();
+            return estimator.getEta(size - bytes.get());
+        }
+
+        public boolean isStalled()
+        {
+            sampleIfDue();
+            return !isFinished()
+                    && (estimator.getIdleTime(System.currentTimeMillis()) >= STALL_THRESHOLD);
+        }
+    }
+}
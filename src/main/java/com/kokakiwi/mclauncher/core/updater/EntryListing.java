@@ -0,0 +1,146 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+public class EntryListing
+{
+    private final String      md5;
+    private final long        size;
+    private final List<Entry> entries = new ArrayList<Entry>();
+
+    private EntryListing(String md5, long size)
+    {
+        this.md5 = md5;
+        this.size = size;
+    }
+
+    public static EntryListing load(HttpClient client, URL url)
+            throws IOException
+    {
+        InputStream in = client.get(url);
+        try
+        {
+            return parse(in);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    public static EntryListing parse(InputStream in) throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in,
+                "UTF-8"));
+
+        String line = reader.readLine();
+        if (line == null)
+        {
+            throw new IOException("Empty entry listing");
+        }
+        String[] header = line.trim().split(" ");
+        if (header.length != 2)
+        {
+            throw new IOException("Invalid entry listing header: " + line);
+        }
+
+        EntryListing listing = new EntryListing(header[0].toLowerCase(),
+                Long.parseLong(header[1]));
+
+        while ((line = reader.readLine()) != null)
+        {
+            if (line.trim().length() == 0)
+            {
+                continue;
+            }
+            String[] values = line.split(" ", 5);
+            if (values.length != 5)
+            {
+                throw new IOException("Invalid entry listing line: " + line);
+            }
+            listing.entries.add(new Entry(values[4], values[0].toLowerCase(),
+                    Long.parseLong(values[1]), Integer.parseInt(values[2]),
+                    Long.parseLong(values[3])));
+        }
+        return listing;
+    }
+
+    public String getMd5()
+    {
+        return md5;
+    }
+
+    public long getSize()
+    {
+        return size;
+    }
+
+    public List<Entry> getEntries()
+    {
+        return entries;
+    }
+
+    public static class Entry
+    {
+        private final String name;
+        private final String md5;
+        private final long   size;
+        private final int    method;
+        private final long   dosTime;
+
+        public Entry(String name, String md5, long size, int method,
+                long dosTime)
+        {
+            this.name = name;
+            this.md5 = md5;
+            this.size = size;
+            this.method = method;
+            this.dosTime = dosTime;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public String getMd5()
+        {
+            return md5;
+        }
+
+        public long getSize()
+        {
+            return size;
+        }
+
+        public int getMethod()
+        {
+            return method;
+        }
+
+        public long getDosTime()
+        {
+            return dosTime;
+        }
+
+        public long getTime()
+        {
+            Calendar calendar = Calendar.getInstance();
+            calendar.clear();
+            calendar.set((int) (((dosTime >> 25) & 0x7f) + 1980),
+                    (int) (((dosTime >> 21) & 0x0f) - 1),
+                    (int) ((dosTime >> 16) & 0x1f),
+                    (int) ((dosTime >> 11) & 0x1f),
+                    (int) ((dosTime >> 5) & 0x3f),
+                    (int) ((dosTime << 1) & 0x3e));
+            return calendar.getTimeInMillis();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+public class HashPipeline
+{
+    private static final ByteBuffer         END   = ByteBuffer.allocate(0);
+
+    private final MessageDigest[]           digests;
+    private final BlockingQueue<ByteBuffer> queue = new ArrayBlockingQueue<ByteBuffer>(
+                                                          8);
+    private final Thread                    worker;
+    private boolean                         finished;
+
+    public HashPipeline(MessageDigest[] digests)
+    {
+        this.digests = digests;
+
+        worker = new Thread("HashPipeline") {
+            @Override
+            public void run()
+            {
+                ByteBuffer buffer;
+                while ((buffer = next()) != END)
+                {
+                    for (MessageDigest digest : HashPipeline.this.digests)
+                    {
+                        buffer.position(0);
+                        digest.update(buffer);
+                    }
+                    BufferPool.release(buffer);
+                }
+            }
+        };
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public void submit(ByteBuffer buffer) throws IOException
+    {
+        try
+        {
+            queue.put(buffer);
+        }
+        catch (InterruptedException e)
+        {
+            throw new InterruptedIOException("Interrupted while hashing");
+        }
+    }
+
+    public void finish() throws IOException
+    {
+        if (finished)
+        {
+            return;
+        }
+        finished = true;
+        submit(END);
+        try
+        {
+            worker.join();
+        }
+        catch (InterruptedException e)
+        {
+            throw new InterruptedIOException("Interrupted while hashing");
+        }
+    }
+
+    private ByteBuffer next()
+    {
+        while (true)
+        {
+            try
+            {
+                return queue.take();
+            }
+            catch (InterruptedException e)
+            {
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+public class HttpClient
+{
+    private final int                         connectTimeout;
+    private final int                         readTimeout;
+    private final Map<String, ContentDecoder> decoders = new LinkedHashMap<String, ContentDecoder>();
+
+    public HttpClient(int connectTimeout, int readTimeout)
+    {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+
+        addDecoder("gzip", new ContentDecoder() {
+            public InputStream decode(InputStream in) throws IOException
+            {
+                return new GZIPInputStream(in, BufferPool.BUFFER_SIZE);
+            }
+        });
+        addDecoder("deflate", new ContentDecoder() {
+            public InputStream decode(InputStream in) throws IOException
+            {
+                return new InflaterInputStream(in);
+            }
+        });
+    }
+
+    public static void setMaxConnections(int maxConnections)
+    {
+        if (System.getProperty("http.maxConnections") == null)
+        {
+            System.setProperty("http.maxConnections",
+                    Integer.toString(Math.max(maxConnections, 5)));
+        }
+    }
+
+    public void addDecoder(String encoding, ContentDecoder decoder)
+    {
+        decoders.put(encoding.trim().toLowerCase(), decoder);
+    }
+
+    public int getConnectTimeout()
+    {
+        return connectTimeout;
+    }
+
+    public int getReadTimeout()
+    {
+        return readTimeout;
+    }
+
+    public URLConnection open(URL url) throws IOException
+    {
+        URLConnection connection = url.openConnection();
+        connection.setUseCaches(false);
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        if (connection instanceof HttpURLConnection)
+        {
+            connection.setRequestProperty("Cache-Control", "no-cache");
+        }
+        return connection;
+    }
+
+    public URLConnection head(URL url) throws IOException
+    {
+        URLConnection connection = open(url);
+        if (connection instanceof HttpURLConnection)
+        {
+            ((HttpURLConnection) connection).setRequestMethod("HEAD");
+        }
+        return connection;
+    }
+
+    public void acceptEncoding(URLConnection connection)
+    {
+        StringBuilder encodings = new StringBuilder();
+        for (String encoding : decoders.keySet())
+        {
+            if (encodings.length() > 0)
+            {
+                encodings.append(", ");
+            }
+            encodings.append(encoding);
+        }
+        if (encodings.length() > 0)
+        {
+            connection.setRequestProperty("Accept-Encoding",
+                    encodings.toString());
+        }
+    }
+
+    public boolean isEncoded(URLConnection connection)
+    {
+        String encoding = connection.getContentEncoding();
+        return (encoding != null) && (encoding.trim().length() > 0)
+                && !encoding.trim().equalsIgnoreCase("identity");
+    }
+
+    public int getResponseCode(URLConnection connection) throws IOException
+    {
+        if (connection instanceof HttpURLConnection)
+        {
+            return ((HttpURLConnection) connection).getResponseCode();
+        }
+        connection.connect();
+        return HttpURLConnection.HTTP_OK;
+    }
+
+    public InputStream getInputStream(URLConnection connection)
+            throws IOException
+    {
+        InputStream in;
+        try
+        {
+            in = connection.getInputStream();
+        }
+        catch (IOException e)
+        {
+            release(connection);
+            throw e;
+        }
+
+        if (!isEncoded(connection))
+        {
+            return in;
+        }
+        String encoding = connection.getContentEncoding().trim().toLowerCase();
+        ContentDecoder decoder = decoders.get(encoding);
+        if (decoder == null)
+        {
+            in.close();
+            throw new IOException("Unsupported content encoding " + encoding
+                    + " from " + connection.getURL());
+        }
+        return decoder.decode(in);
+    }
+
+    public InputStream get(URL url) throws IOException
+    {
+        return getInputStream(open(url));
+    }
+
+    public void release(URLConnection connection)
+    {
+        try
+        {
+            connection.getInputStream().close();
+        }
+        catch (IOException e)
+        {
+            if (connection instanceof HttpURLConnection)
+            {
+                InputStream error = ((HttpURLConnection) connection)
+                        .getErrorStream();
+                if (error != null)
+                {
+                    try
+                    {
+                        byte[] buffer = new byte[4096];
+                        while (error.read(buffer) != -1)
+                        {
+                        }
+                        error.close();
+                    }
+                    catch (IOException ignored)
+                    {
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+public class IncrementalJar
+{
+    private final File         installed;
+    private final EntryListing listing;
+
+    public IncrementalJar(File installed, EntryListing listing)
+    {
+        this.installed = installed;
+        this.listing = listing;
+    }
+
+    public void rebuild(File target, EntrySource source) throws Exception
+    {
+        JarFile jarFile = new JarFile(installed, false);
+        try
+        {
+            Map<String, JarEntry> unchanged = findUnchanged(jarFile);
+
+            JarOutputStream out = new JarOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(target), BufferPool.BUFFER_SIZE));
+            try
+            {
+                byte[] buffer = new byte[BufferPool.BUFFER_SIZE];
+                for (EntryListing.Entry entry : listing.getEntries())
+                {
+                    JarEntry local = unchanged.get(entry.getName());
+                    byte[] data = null;
+                    if (local == null)
+                    {
+                        data = fetch(entry, source);
+                    }
+
+                    JarEntry jarEntry = new JarEntry(entry.getName());
+                    jarEntry.setTime(entry.getTime());
+                    jarEntry.setMethod(entry.getMethod());
+                    if (entry.getMethod() == ZipEntry.STORED)
+                    {
+                        CRC32 crc = new CRC32();
+                        if (data != null)
+                        {
+                            crc.update(data);
+                        }
+                        jarEntry.setSize(entry.getSize());
+                        jarEntry.setCompressedSize(entry.getSize());
+                        jarEntry.setCrc(local != null ? local.getCrc() : crc
+                                .getValue());
+                    }
+                    out.putNextEntry(jarEntry);
+
+                    if (data != null)
+                    {
+                        out.write(data);
+                    }
+                    else
+                    {
+                        InputStream in = jarFile.getInputStream(local);
+                        try
+                        {
+                            int read;
+                            while ((read = in.read(buffer)) != -1)
+                            {
+                                out.write(buffer, 0, read);
+                            }
+                        }
+                        finally
+                        {
+                            in.close();
+                        }
+                    }
+                    out.closeEntry();
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        finally
+        {
+            jarFile.close();
+        }
+    }
+
+    private Map<String, JarEntry> findUnchanged(JarFile jarFile)
+            throws Exception
+    {
+        Map<String, JarEntry> unchanged = new HashMap<String, JarEntry>();
+        byte[] buffer = new byte[BufferPool.BUFFER_SIZE];
+
+        for (EntryListing.Entry entry : listing.getEntries())
+        {
+            JarEntry local = jarFile.getJarEntry(entry.getName());
+            if ((local == null) || (local.getSize() != entry.getSize()))
+            {
+                continue;
+            }
+
+            MessageDigest m = MessageDigest.getInstance("MD5");
+            InputStream in = jarFile.getInputStream(local);
+            try
+            {
+                int read;
+                while ((read = in.read(buffer)) != -1)
+                {
+                    m.update(buffer, 0, read);
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+
+            if (Digests.matches(m.digest(), entry.getMd5()))
+            {
+                unchanged.put(entry.getName(), local);
+            }
+        }
+        return unchanged;
+    }
+
+    private byte[] fetch(EntryListing.Entry entry, EntrySource source)
+            throws Exception
+    {
+        ByteArrayOutputStream data = new ByteArrayOutputStream(
+                (int) Math.max(entry.getSize(), 0));
+        InputStream in = source.open(entry);
+        try
+        {
+            byte[] buffer = new byte[BufferPool.BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                data.write(buffer, 0, read);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+
+        byte[] bytes = data.toByteArray();
+        MessageDigest m = MessageDigest.getInstance("MD5");
+        if ((bytes.length != entry.getSize())
+                || !Digests.matches(m.digest(bytes), entry.getMd5()))
+        {
+            throw new IOException("Corrupted entry " + entry.getName());
+        }
+        return bytes;
+    }
+
+    public static interface EntrySource
+    {
+        public InputStream open(EntryListing.Entry entry) throws IOException;
+    }
+}
@@ -0,0 +1,194 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+public class JarRepacker
+{
+    private static final String        MANIFEST = "META-INF/MANIFEST.MF";
+    private static final String        META_INF = "META-INF/";
+
+    private final Map<String, Integer> ranks    = new HashMap<String, Integer>();
+
+    public JarRepacker(List<String> loadOrder)
+    {
+        for (String name : loadOrder)
+        {
+            if (!ranks.containsKey(name))
+            {
+                ranks.put(name, ranks.size());
+            }
+        }
+    }
+
+    public static List<String> readOrder(File file)
+    {
+        List<String> order = new ArrayList<String>();
+        if (!file.exists())
+        {
+            return order;
+        }
+        try
+        {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(file), "UTF-8"));
+            try
+            {
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    if (line.length() > 0)
+                    {
+                        order.add(line);
+                    }
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+        return order;
+    }
+
+    public boolean repack(File jar) throws IOException
+    {
+        File temp = new File(jar.getPath() + ".repack");
+        JarFile source = new JarFile(jar, false);
+        try
+        {
+            List<JarEntry> entries = Collections.list(source.entries());
+            List<JarEntry> sorted = new ArrayList<JarEntry>(entries);
+            Collections.sort(sorted, new Comparator<JarEntry>() {
+                public int compare(JarEntry a, JarEntry b)
+                {
+                    int x = rank(a.getName());
+                    int y = rank(b.getName());
+                    return x < y ? -1 : (x == y ? 0 : 1);
+                }
+            });
+
+            if (sorted.equals(entries) && isStored(entries))
+            {
+                return false;
+            }
+
+            JarOutputStream out = new JarOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(temp), BufferPool.BUFFER_SIZE));
+            try
+            {
+                byte[] buffer = new byte[BufferPool.BUFFER_SIZE];
+                CRC32 crc = new CRC32();
+                for (JarEntry entry : sorted)
+                {
+                    byte[] data = read(source.getInputStream(entry), buffer);
+                    crc.reset();
+                    crc.update(data);
+
+                    JarEntry stored = new JarEntry(entry.getName());
+                    stored.setMethod(ZipEntry.STORED);
+                    stored.setTime(entry.getTime());
+                    stored.setSize(data.length);
+                    stored.setCompressedSize(data.length);
+                    stored.setCrc(crc.getValue());
+                    stored.setComment(entry.getComment());
+
+                    out.putNextEntry(stored);
+                    out.write(data);
+                    out.closeEntry();
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        catch (IOException e)
+        {
+            temp.delete();
+            throw e;
+        }
+        finally
+        {
+            source.close();
+        }
+
+        if ((jar.exists() && !jar.delete()) || !temp.renameTo(jar))
+        {
+            temp.delete();
+            throw new IOException("Unable to replace " + jar);
+        }
+        return true;
+    }
+
+    private int rank(String name)
+    {
+        if (name.equals(META_INF))
+        {
+            return -3;
+        }
+        if (name.equals(MANIFEST))
+        {
+            return -2;
+        }
+        if (name.startsWith(META_INF))
+        {
+            return -1;
+        }
+        Integer rank = ranks.get(name);
+        return rank == null ? Integer.MAX_VALUE : rank;
+    }
+
+    private static boolean isStored(List<JarEntry> entries)
+    {
+        for (JarEntry entry : entries)
+        {
+            if (entry.getMethod() != ZipEntry.STORED)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] read(InputStream in, byte[] buffer)
+            throws IOException
+    {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        try
+        {
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                data.write(buffer, 0, read);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return data.toByteArray();
+    }
+}
@@ -0,0 +1,152 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+public class LzWindow
+{
+    private final byte[] buffer;
+    private final int    size;
+    private int          start;
+    private int          position;
+    private int          full;
+    private int          limit;
+    private int          pendingLength;
+    private int          pendingDistance;
+
+    public LzWindow(int size)
+    {
+        this.size = size;
+        buffer = new byte[size];
+    }
+
+    public static int sizeFor(long dictSize, long uncompressedSize)
+    {
+        if ((uncompressedSize >= 0) && (uncompressedSize < dictSize))
+        {
+            dictSize = uncompressedSize;
+        }
+        if (dictSize > (Integer.MAX_VALUE - 15))
+        {
+            throw new IllegalArgumentException("Dictionary too large: "
+                    + dictSize);
+        }
+        return Math.max(4096, ((int) dictSize + 15) & ~15);
+    }
+
+    public void reset()
+    {
+        start = 0;
+        position = 0;
+        full = 0;
+        limit = 0;
+        pendingLength = 0;
+        buffer[size - 1] = 0;
+    }
+
+    public void setLimit(int outMax)
+    {
+        limit = (size - position) <= outMax ? size : position + outMax;
+    }
+
+    public boolean hasSpace()
+    {
+        return position < limit;
+    }
+
+    public boolean hasPending()
+    {
+        return pendingLength > 0;
+    }
+
+    public int getPosition()
+    {
+        return position;
+    }
+
+    public int getByte(int distance)
+    {
+        int offset = position - distance - 1;
+        if (distance >= position)
+        {
+            offset += size;
+        }
+        return buffer[offset] & 0xFF;
+    }
+
+    public void putByte(byte b)
+    {
+        buffer[position++] = b;
+        if (full < position)
+        {
+            full = position;
+        }
+    }
+
+    public void repeat(int distance, int length) throws IOException
+    {
+        if ((distance < 0) || (distance >= full))
+        {
+            throw new IOException("Corrupt LZMA data");
+        }
+
+        int left = Math.min(limit - position, length);
+        pendingLength = length - left;
+        pendingDistance = distance;
+
+        int back = position - distance - 1;
+        if (distance >= position)
+        {
+            back += size;
+        }
+
+        do
+        {
+            buffer[position++] = buffer[back++];
+            if (back == size)
+            {
+                back = 0;
+            }
+        } while (--left > 0);
+
+        if (full < position)
+        {
+            full = position;
+        }
+    }
+
+    public void repeatPending() throws IOException
+    {
+        if (pendingLength > 0)
+        {
+            repeat(pendingDistance, pendingLength);
+        }
+    }
+
+    public void copyUncompressed(DataInputStream in, int length)
+            throws IOException
+    {
+        int copySize = Math.min(limit - position, length);
+        in.readFully(buffer, position, copySize);
+        position += copySize;
+
+        if (full < position)
+        {
+            full = position;
+        }
+    }
+
+    public int flush(byte[] out, int off)
+    {
+        int copySize = position - start;
+        if (position == size)
+        {
+            position = 0;
+        }
+
+        System.arraycopy(buffer, start, out, off, copySize);
+        start = position;
+
+        return copySize;
+    }
+}
@@ -0,0 +1,157 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class Lzma2InputStream extends InputStream
+{
+    private final DataInputStream in;
+    private final LzWindow        window;
+    private final RangeDecoder    rc            = new RangeDecoder(1 << 16);
+    private final byte[]          single        = new byte[1];
+    private LzmaDecoder           lzma;
+    private int                   uncompressedSize;
+    private boolean               lzmaChunk;
+    private boolean               needDictReset = true;
+    private boolean               needProps     = true;
+    private boolean               finished;
+
+    public Lzma2InputStream(InputStream in, long dictSize, long expectedSize)
+    {
+        this.in = in instanceof DataInputStream ? (DataInputStream) in
+                : new DataInputStream(in);
+        window = new LzWindow(LzWindow.sizeFor(dictSize, expectedSize));
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (len == 0)
+        {
+            return 0;
+        }
+
+        int size = 0;
+        while ((len > 0) && !finished)
+        {
+            if (uncompressedSize == 0)
+            {
+                nextChunk();
+                continue;
+            }
+
+            int max = Math.min(uncompressedSize, len);
+            window.setLimit(max);
+            if (lzmaChunk)
+            {
+                lzma.decode();
+            }
+            else
+            {
+                window.copyUncompressed(in, max);
+            }
+
+            int copied = window.flush(b, off);
+            off += copied;
+            len -= copied;
+            size += copied;
+            uncompressedSize -= copied;
+
+            if ((uncompressedSize == 0) && lzmaChunk
+                    && (!rc.isFinished() || window.hasPending()))
+            {
+                throw new IOException("Corrupt LZMA2 chunk");
+            }
+        }
+
+        return size == 0 ? -1 : size;
+    }
+
+    private void nextChunk() throws IOException
+    {
+        int control = in.readUnsignedByte();
+        if (control == 0x00)
+        {
+            finished = true;
+            return;
+        }
+
+        if ((control >= 0xE0) || (control == 0x01))
+        {
+            needProps = true;
+            needDictReset = false;
+            window.reset();
+        }
+        else if (needDictReset)
+        {
+            throw new IOException("Corrupt LZMA2 stream");
+        }
+
+        if (control >= 0x80)
+        {
+            lzmaChunk = true;
+            uncompressedSize = ((control & 0x1F) << 16)
+                    + in.readUnsignedShort() + 1;
+            int compressedSize = in.readUnsignedShort() + 1;
+
+            if (control >= 0xC0)
+            {
+                needProps = false;
+                readProps();
+            }
+            else if (needProps)
+            {
+                throw new IOException("Corrupt LZMA2 stream");
+            }
+            else if (control >= 0xA0)
+            {
+                lzma.reset();
+            }
+
+            rc.prepare(in, compressedSize);
+        }
+        else if (control > 0x02)
+        {
+            throw new IOException("Corrupt LZMA2 stream");
+        }
+        else
+        {
+            lzmaChunk = false;
+            uncompressedSize = in.readUnsignedShort() + 1;
+        }
+    }
+
+    private void readProps() throws IOException
+    {
+        int props = in.readUnsignedByte();
+        if (props > (((4 * 5) + 4) * 9) + 8)
+        {
+            throw new IOException("Invalid LZMA2 properties");
+        }
+
+        int pb = props / 45;
+        props -= pb * 45;
+        int lp = props / 9;
+        int lc = props - (lp * 9);
+        if ((lc + lp) > 4)
+        {
+            throw new IOException("Invalid LZMA2 properties");
+        }
+
+        if (lzma == null)
+        {
+            lzma = new LzmaDecoder(window, rc, lc, lp, pb);
+        }
+        else
+        {
+            lzma.setProperties(lc, lp, pb);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.IOException;
+
+public class LzmaDecoder
+{
+    private static final int     STATES        = 12;
+    private static final int     POS_STATES    = 16;
+    private static final int     DIST_STATES   = 4;
+    private static final int     MATCH_LEN_MIN = 2;
+
+    private final LzWindow       window;
+    private final RangeDecoder   rc;
+    private int                  lc;
+    private int                  literalPosMask;
+    private int                  posMask;
+
+    private int                  state;
+    private final int[]          reps          = new int[4];
+    private boolean              endMarker;
+
+    private final short[][]      isMatch       = new short[STATES][POS_STATES];
+    private final short[]        isRep         = new short[STATES];
+    private final short[]        isRep0        = new short[STATES];
+    private final short[]        isRep1        = new short[STATES];
+    private final short[]        isRep2        = new short[STATES];
+    private final short[][]      isRep0Long    = new short[STATES][POS_STATES];
+    private final short[][]      distSlots     = new short[DIST_STATES][64];
+    private final short[][]      distSpecial   = { new short[2], new short[2],
+            new short[4], new short[4], new short[8], new short[8],
+            new short[16], new short[16], new short[32], new short[32] };
+    private final short[]        distAlign     = new short[16];
+    private short[][]            literals;
+    private final LengthDecoder  matchLength   = new LengthDecoder();
+    private final LengthDecoder  repLength     = new LengthDecoder();
+
+    public LzmaDecoder(LzWindow window, RangeDecoder rc, int lc, int lp,
+            int pb)
+    {
+        this.window = window;
+        this.rc = rc;
+        setProperties(lc, lp, pb);
+    }
+
+    public void setProperties(int lc, int lp, int pb)
+    {
+        this.lc = lc;
+        literalPosMask = (1 << lp) - 1;
+        posMask = (1 << pb) - 1;
+
+        if ((literals == null) || (literals.length != (1 << (lc + lp))))
+        {
+            literals = new short[1 << (lc + lp)][0x300];
+        }
+        reset();
+    }
+
+    public void reset()
+    {
+        state = 0;
+        reps[0] = 0;
+        reps[1] = 0;
+        reps[2] = 0;
+        reps[3] = 0;
+        endMarker = false;
+
+        for (int i = 0; i < STATES; i++)
+        {
+            RangeDecoder.initProbs(isMatch[i]);
+            RangeDecoder.initProbs(isRep0Long[i]);
+        }
+        RangeDecoder.initProbs(isRep);
+        RangeDecoder.initProbs(isRep0);
+        RangeDecoder.initProbs(isRep1);
+        RangeDecoder.initProbs(isRep2);
+        for (short[] probs : distSlots)
+        {
+            RangeDecoder.initProbs(probs);
+        }
+        for (short[] probs : distSpecial)
+        {
+            RangeDecoder.initProbs(probs);
+        }
+        RangeDecoder.initProbs(distAlign);
+        for (short[] probs : literals)
+        {
+            RangeDecoder.initProbs(probs);
+        }
+        matchLength.reset();
+        repLength.reset();
+    }
+
+    public boolean isEndMarker()
+    {
+        return endMarker;
+    }
+
+    public void decode() throws IOException
+    {
+        window.repeatPending();
+
+        while (window.hasSpace())
+        {
+            int posState = window.getPosition() & posMask;
+
+            if (rc.decodeBit(isMatch[state], posState) == 0)
+            {
+                decodeLiteral();
+            }
+            else
+            {
+                int length = rc.decodeBit(isRep, state) == 0 ? decodeMatch(posState)
+                        : decodeRepMatch(posState);
+                if (endMarker)
+                {
+                    break;
+                }
+                window.repeat(reps[0], length);
+            }
+        }
+
+        rc.normalize();
+    }
+
+    private void decodeLiteral() throws IOException
+    {
+        int previous = window.getByte(0);
+        short[] probs = literals[(previous >> (8 - lc))
+                + ((window.getPosition() & literalPosMask) << lc)];
+        int symbol = 1;
+
+        if (state < 7)
+        {
+            do
+            {
+                symbol = (symbol << 1) | rc.decodeBit(probs, symbol);
+            } while (symbol < 0x100);
+        }
+        else
+        {
+            int matchByte = window.getByte(reps[0]);
+            int offset = 0x100;
+            do
+            {
+                matchByte <<= 1;
+                int matchBit = matchByte & offset;
+                int bit = rc.decodeBit(probs, offset + matchBit + symbol);
+                symbol = (symbol << 1) | bit;
+                offset &= (0 - bit) ^ ~matchBit;
+            } while (symbol < 0x100);
+        }
+
+        window.putByte((byte) symbol);
+        state = state <= 3 ? 0 : (state <= 9 ? state - 3 : state - 6);
+    }
+
+    private int decodeMatch(int posState) throws IOException
+    {
+        state = state < 7 ? 7 : 10;
+
+        reps[3] = reps[2];
+        reps[2] = reps[1];
+        reps[1] = reps[0];
+
+        int length = matchLength.decode(posState);
+        int distSlot = rc.decodeBitTree(distSlots[Math.min(length
+                - MATCH_LEN_MIN, DIST_STATES - 1)]);
+
+        if (distSlot < 4)
+        {
+            reps[0] = distSlot;
+        }
+        else
+        {
+            int bits = (distSlot >> 1) - 1;
+            reps[0] = (2 | (distSlot & 1)) << bits;
+
+            if (distSlot < 14)
+            {
+                reps[0] |= rc.decodeReverseBitTree(distSpecial[distSlot - 4]);
+            }
+            else
+            {
+                reps[0] |= rc.decodeDirectBits(bits - 4) << 4;
+                reps[0] |= rc.decodeReverseBitTree(distAlign);
+            }
+        }
+
+        endMarker = reps[0] == -1;
+        return length;
+    }
+
+    private int decodeRepMatch(int posState) throws IOException
+    {
+        if (rc.decodeBit(isRep0, state) == 0)
+        {
+            if (rc.decodeBit(isRep0Long[state], posState) == 0)
+            {
+                state = state < 7 ? 9 : 11;
+                return 1;
+            }
+        }
+        else
+        {
+            int distance;
+            if (rc.decodeBit(isRep1, state) == 0)
+            {
+                distance = reps[1];
+            }
+            else
+            {
+                if (rc.decodeBit(isRep2, state) == 0)
+                {
+                    distance = reps[2];
+                }
+                else
+                {
+                    distance = reps[3];
+                    reps[3] = reps[2];
+                }
+                reps[2] = reps[1];
+            }
+            reps[1] = reps[0];
+            reps[0] = distance;
+        }
+
+        state = state < 7 ? 8 : 11;
+        return repLength.decode(posState);
+    }
+
+    private class LengthDecoder
+    {
+        private final short[]   choice = new short[2];
+        private final short[][] low    = new short[POS_STATES][8];
+        private final short[][] mid    = new short[POS_STATES][8];
+        private final short[]   high   = new short[256];
+
+        public void reset()
+        {
+            RangeDecoder.initProbs(choice);
+            for (int i = 0; i < POS_STATES; i++)
+            {
+                RangeDecoder.initProbs(low[i]);
+                RangeDecoder.initProbs(mid[i]);
+            }
+            RangeDecoder.initProbs(high);
+        }
+
+        public int decode(int posState) throws IOException
+        {
+            if (rc.decodeBit(choice, 0) == 0)
+            {
+                return rc.decodeBitTree(low[posState]) + MATCH_LEN_MIN;
+            }
+            if (rc.decodeBit(choice, 1) == 0)
+            {
+                return rc.decodeBitTree(mid[posState]) + MATCH_LEN_MIN + 8;
+            }
+            return rc.decodeBitTree(high) + MATCH_LEN_MIN + 16;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public class LzmaInputStream extends InputStream
+{
+    private final InputStream  in;
+    private final LzWindow     window;
+    private final RangeDecoder rc;
+    private final LzmaDecoder  lzma;
+    private final byte[]       single = new byte[1];
+    private long               remaining;
+    private boolean            finished;
+
+    public LzmaInputStream(InputStream in) throws IOException
+    {
+        this.in = in;
+
+        int props = readByte();
+        if (props >= (9 * 5 * 5))
+        {
+            throw new IOException("Invalid LZMA properties");
+        }
+
+        long dictSize = 0;
+        for (int i = 0; i < 4; i++)
+        {
+            dictSize |= (long) readByte() << (8 * i);
+        }
+        remaining = 0;
+        for (int i = 0; i < 8; i++)
+        {
+            remaining |= (long) readByte() << (8 * i);
+        }
+
+        window = new LzWindow(LzWindow.sizeFor(dictSize, remaining));
+        window.reset();
+        rc = new RangeDecoder(in);
+        rc.init();
+        lzma = new LzmaDecoder(window, rc, props % 9, (props / 9) % 5,
+                props / 45);
+        finished = remaining == 0;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (len == 0)
+        {
+            return 0;
+        }
+        if (finished)
+        {
+            return -1;
+        }
+
+        int size = 0;
+        while ((len > 0) && !finished)
+        {
+            int max = len;
+            if ((remaining >= 0) && (remaining < len))
+            {
+                max = (int) remaining;
+            }
+
+            window.setLimit(max);
+            lzma.decode();
+
+            int copied = window.flush(b, off);
+            off += copied;
+            len -= copied;
+            size += copied;
+
+            if (remaining >= 0)
+            {
+                remaining -= copied;
+            }
+            finished = (remaining == 0) || lzma.isEndMarker();
+        }
+
+        return size == 0 ? -1 : size;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        in.close();
+    }
+
+    private int readByte() throws IOException
+    {
+        int b = in.read();
+        if (b == -1)
+        {
+            throw new IOException("Truncated LZMA header");
+        }
+        return b;
+    }
+}
@@ -0,0 +1,287 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.kokakiwi.mclauncher.utils.Utils;
+
+public class MirrorSelector
+{
+    public static final long   UNREACHABLE  = Integer.MAX_VALUE;
+    private static final int   PROBE_LENGTH = 65536;
+    private static final long  REFERENCE    = 1048576;
+
+    private final List<String> mirrors;
+    private final File         rankingFile;
+    private final HttpClient   client;
+    private final int          timeout;
+    private final Properties   scores       = new Properties();
+
+    public MirrorSelector(List<String> mirrors, File rankingFile,
+            HttpClient client)
+    {
+        this.mirrors = new ArrayList<String>();
+        if (mirrors != null)
+        {
+            for (String mirror : mirrors)
+            {
+                if ((mirror != null) && (mirror.trim().length() > 0))
+                {
+                    this.mirrors.add(mirror.endsWith("/") ? mirror : mirror
+                            + "/");
+                }
+            }
+        }
+        this.rankingFile = rankingFile;
+        this.client = client;
+        timeout = client.getConnectTimeout() + client.getReadTimeout();
+
+        if (rankingFile.exists())
+        {
+            try
+            {
+                FileInputStream fis = new FileInputStream(rankingFile);
+                try
+                {
+                    scores.load(fis);
+                }
+                finally
+                {
+                    fis.close();
+                }
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public boolean hasMirrors()
+    {
+        return !mirrors.isEmpty();
+    }
+
+    public List<URL> getCandidates(URL url)
+    {
+        List<URL> candidates = new ArrayList<URL>();
+        candidates.add(url);
+
+        String fileName = Utils.getFileName(url);
+        for (String mirror : mirrors)
+        {
+            if (mirror.equals(getBase(url)))
+            {
+                continue;
+            }
+            try
+            {
+                candidates.add(new URL(mirror + fileName));
+            }
+            catch (MalformedURLException e)
+            {
+                e.printStackTrace();
+            }
+        }
+
+        final Map<URL, Long> ranks = new HashMap<URL, Long>();
+        for (URL candidate : candidates)
+        {
+            ranks.put(candidate, getScore(candidate));
+        }
+        Collections.sort(candidates, new Comparator<URL>() {
+            public int compare(URL a, URL b)
+            {
+                return ranks.get(a).compareTo(ranks.get(b));
+            }
+        });
+        return candidates;
+    }
+
+    public void probe(URL[] urls)
+    {
+        Map<String, URL> targets = new LinkedHashMap<String, URL>();
+        for (URL url : urls)
+        {
+            if (url == null)
+            {
+                continue;
+            }
+            for (URL candidate : getCandidates(url))
+            {
+                String base = getBase(candidate);
+                if (!targets.containsKey(base) && (getScore(candidate) < 0))
+                {
+                    targets.put(base, candidate);
+                }
+            }
+        }
+        if (targets.size() < 2)
+        {
+            return;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(targets.size());
+        Map<String, Future<Long>> results = new LinkedHashMap<String, Future<Long>>();
+        for (Map.Entry<String, URL> target : targets.entrySet())
+        {
+            final URL url = target.getValue();
+            results.put(target.getKey(), pool.submit(new Callable<Long>() {
+                public Long call() throws Exception
+                {
+                    return measure(url);
+                }
+            }));
+        }
+        pool.shutdown();
+
+        try
+        {
+            for (Map.Entry<String, Future<Long>> result : results.entrySet())
+            {
+                long score = UNREACHABLE;
+                try
+                {
+                    score = result.getValue().get(timeout,
+                            TimeUnit.MILLISECONDS);
+                }
+                catch (Exception e)
+                {
+                }
+                synchronized (this)
+                {
+                    scores.setProperty(result.getKey(), Long.toString(score));
+                }
+            }
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+        save();
+    }
+
+    public synchronized void record(URL url, long bytes, long millis)
+    {
+        if (bytes < PROBE_LENGTH)
+        {
+            return;
+        }
+        long measured = (REFERENCE * Math.max(millis, 1)) / bytes;
+        long score = getScore(url);
+        scores.setProperty(getBase(url), Long.toString(score < 0 ? measured
+                : (score + measured) / 2));
+    }
+
+    public synchronized void failed(URL url)
+    {
+        long score = Math.max(getScore(url), 0);
+        scores.setProperty(getBase(url),
+                Long.toString(Math.min(score + timeout, UNREACHABLE)));
+    }
+
+    public synchronized void save()
+    {
+        try
+        {
+            FileOutputStream fos = new FileOutputStream(rankingFile);
+            try
+            {
+                scores.store(fos, "mirror rankings (ms per MB)");
+            }
+            finally
+            {
+                fos.close();
+            }
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    private synchronized long getScore(URL url)
+    {
+        String score = scores.getProperty(getBase(url));
+        if (score == null)
+        {
+            return -1;
+        }
+        try
+        {
+            return Long.parseLong(score);
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    private long measure(URL url) throws IOException
+    {
+        long start = System.currentTimeMillis();
+        URLConnection connection = client.open(url);
+        connection.setRequestProperty("Range", "bytes=0-" + (PROBE_LENGTH - 1));
+
+        int code = client.getResponseCode(connection);
+        if ((code != HttpURLConnection.HTTP_OK)
+                && (code != HttpURLConnection.HTTP_PARTIAL))
+        {
+            client.release(connection);
+            return UNREACHABLE;
+        }
+
+        InputStream in = client.getInputStream(connection);
+        long firstByte;
+        long read = 0;
+        try
+        {
+            byte[] buffer = new byte[8192];
+            int amount = in.read(buffer);
+            firstByte = System.currentTimeMillis();
+            while ((amount != -1) && (read < PROBE_LENGTH))
+            {
+                read += amount;
+                amount = in.read(buffer);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+
+        long elapsed = Math.max(System.currentTimeMillis() - firstByte, 1);
+        return (firstByte - start)
+                + ((REFERENCE * elapsed) / Math.max(read, 1));
+    }
+
+    private static String getBase(URL url)
+    {
+        String file = url.toExternalForm();
+        if (file.contains("?"))
+        {
+            file = file.substring(0, file.indexOf("?"));
+        }
+        return file.substring(0, file.lastIndexOf('/') + 1);
+    }
+}
@@ -0,0 +1,217 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+public class NativesIndex
+{
+    private final File                directory;
+    private final File                file;
+    private final Map<String, long[]> entries = new LinkedHashMap<String, long[]>();
+    private String                    source  = "";
+
+    public NativesIndex(File directory)
+    {
+        this.directory = directory;
+        file = new File(directory, ".index");
+
+        if (file.exists())
+        {
+            try
+            {
+                load();
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+                entries.clear();
+                source = "";
+            }
+        }
+    }
+
+    public String getSource()
+    {
+        return source;
+    }
+
+    public void setSource(String source)
+    {
+        this.source = source == null ? "" : source;
+    }
+
+    public synchronized boolean isCurrent(String name, long crc, long size)
+    {
+        long[] entry = entries.get(name);
+        if ((entry == null) || (entry[0] != crc) || (entry[1] != size))
+        {
+            return false;
+        }
+        File nativeFile = new File(directory, name);
+        if (!nativeFile.isFile() || (nativeFile.length() != size))
+        {
+            return false;
+        }
+        if (nativeFile.lastModified() == entry[2])
+        {
+            return true;
+        }
+
+        try
+        {
+            if (crc(nativeFile) == crc)
+            {
+                entry[2] = nativeFile.lastModified();
+                return true;
+            }
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    public synchronized boolean isComplete()
+    {
+        if (entries.isEmpty())
+        {
+            return false;
+        }
+        for (Map.Entry<String, long[]> entry : entries.entrySet())
+        {
+            File nativeFile = new File(directory, entry.getKey());
+            if (!nativeFile.isFile()
+                    || (nativeFile.length() != entry.getValue()[1])
+                    || (nativeFile.lastModified() != entry.getValue()[2]))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public synchronized void put(String name, long crc, long size)
+    {
+        entries.put(name, new long[] { crc, size,
+                new File(directory, name).lastModified() });
+    }
+
+    public synchronized void retain(Set<String> names)
+    {
+        Iterator<Map.Entry<String, long[]>> iterator = entries.entrySet()
+                .iterator();
+        while (iterator.hasNext())
+        {
+            String name = iterator.next().getKey();
+            if (!names.contains(name))
+            {
+                File nativeFile = new File(directory, name);
+                if (!nativeFile.exists() || nativeFile.delete())
+                {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    public synchronized void save() throws IOException
+    {
+        File temp = new File(file.getPath() + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+        try
+        {
+            StringBuilder data = new StringBuilder();
+            data.append(source.length() == 0 ? "-" : source).append('\n');
+            for (Map.Entry<String, long[]> entry : entries.entrySet())
+            {
+                data.append(Long.toHexString(entry.getValue()[0])).append(' ')
+                        .append(entry.getValue()[1]).append(' ')
+                        .append(entry.getValue()[2]).append(' ')
+                        .append(entry.getKey()).append('\n');
+            }
+            out.write(data.toString().getBytes("UTF-8"));
+        }
+        finally
+        {
+            out.close();
+        }
+
+        if ((file.exists() && !file.delete()) || !temp.renameTo(file))
+        {
+            throw new IOException("Unable to replace " + file);
+        }
+    }
+
+    private void load() throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), "UTF-8"));
+        try
+        {
+            String line = reader.readLine();
+            if (line == null)
+            {
+                return;
+            }
+            source = line.trim().equals("-") ? "" : line.trim();
+
+            while ((line = reader.readLine()) != null)
+            {
+                String[] fields = line.split(" ", 4);
+                if ((fields.length != 4) || (fields[3].length() == 0))
+                {
+                    continue;
+                }
+
+                long[] values;
+                try
+                {
+                    values = new long[] { Long.parseLong(fields[0], 16),
+                            Long.parseLong(fields[1]),
+                            Long.parseLong(fields[2]) };
+                }
+                catch (NumberFormatException e)
+                {
+                    continue;
+                }
+                entries.put(fields[3], values);
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    private static long crc(File file) throws IOException
+    {
+        CRC32 crc = new CRC32();
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            byte[] buffer = new byte[BufferPool.BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                crc.update(buffer, 0, read);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return crc.getValue();
+    }
+}
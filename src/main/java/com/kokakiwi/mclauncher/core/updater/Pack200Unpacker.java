@@ -0,0 +1,80 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.jar.JarOutputStream;
+
+public class Pack200Unpacker
+{
+    private static final Method NEW_UNPACKER;
+    private static final Method UNPACK_STREAM;
+    private static final Method UNPACK_FILE;
+
+    static
+    {
+        Method newUnpacker = null;
+        Method unpackStream = null;
+        Method unpackFile = null;
+        try
+        {
+            Class<?> pack200 = Class.forName("java.util.jar.Pack200");
+            Class<?> unpacker = Class.forName("java.util.jar.Pack200$Unpacker");
+            newUnpacker = pack200.getMethod("newUnpacker");
+            unpackStream = unpacker.getMethod("unpack", InputStream.class,
+                    JarOutputStream.class);
+            unpackFile = unpacker.getMethod("unpack", File.class,
+                    JarOutputStream.class);
+        }
+        catch (Throwable t)
+        {
+            newUnpacker = null;
+        }
+        NEW_UNPACKER = newUnpacker;
+        UNPACK_STREAM = unpackStream;
+        UNPACK_FILE = unpackFile;
+    }
+
+    public static boolean isAvailable()
+    {
+        return NEW_UNPACKER != null;
+    }
+
+    public static void unpack(InputStream in, JarOutputStream out)
+            throws IOException
+    {
+        invoke(UNPACK_STREAM, in, out);
+    }
+
+    public static void unpack(File in, JarOutputStream out) throws IOException
+    {
+        invoke(UNPACK_FILE, in, out);
+    }
+
+    private static void invoke(Method method, Object in, JarOutputStream out)
+            throws IOException
+    {
+        if (!isAvailable())
+        {
+            throw new IOException("Pack200 is not available on this runtime");
+        }
+        try
+        {
+            method.invoke(NEW_UNPACKER.invoke(null), in, out);
+        }
+        catch (InvocationTargetException e)
+        {
+            if (e.getCause() instanceof IOException)
+            {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Unable to unpack: " + e.getCause());
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new IOException("Unable to unpack: " + e);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+
+public class PartialDownload
+{
+    private final File target;
+    private final File partFile;
+    private final File infoFile;
+    private String     etag   = "";
+    private long       offset = 0;
+
+    public PartialDownload(File target)
+    {
+        this.target = target;
+        partFile = new File(target.getPath() + ".part");
+        infoFile = new File(target.getPath() + ".part.info");
+
+        if (partFile.exists() && infoFile.exists())
+        {
+            try
+            {
+                DataInputStream dis = new DataInputStream(new FileInputStream(
+                        infoFile));
+                try
+                {
+                    etag = dis.readUTF();
+                    offset = Math.min(dis.readLong(), partFile.length());
+                }
+                finally
+                {
+                    dis.close();
+                }
+            }
+            catch (IOException e)
+            {
+                etag = "";
+                offset = 0;
+            }
+        }
+    }
+
+    public File getPartFile()
+    {
+        return partFile;
+    }
+
+    public String getETag()
+    {
+        return etag;
+    }
+
+    public long getOffset()
+    {
+        return offset;
+    }
+
+    public boolean canResume()
+    {
+        return (offset > 0) && (etag.length() > 0);
+    }
+
+    public FileOutputStream open(long from, String etag) throws IOException
+    {
+        RandomAccessFile file = new RandomAccessFile(partFile, "rw");
+        try
+        {
+            file.setLength(from);
+        }
+        finally
+        {
+            file.close();
+        }
+
+        this.etag = etag == null ? "" : etag;
+        offset = from;
+        return new FileOutputStream(partFile, true);
+    }
+
+    public void digestExisting(MessageDigest[] digests) throws IOException
+    {
+        InputStream in = new FileInputStream(partFile);
+        try
+        {
+            byte[] buffer = new byte[65536];
+            long remaining = offset;
+            int read;
+            while ((remaining > 0)
+                    && ((read = in.read(buffer, 0,
+                            (int) Math.min(buffer.length, remaining))) != -1))
+            {
+                for (MessageDigest digest : digests)
+                {
+                    digest.update(buffer, 0, read);
+                }
+                remaining -= read;
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    public void checkpoint(long offset)
+    {
+        this.offset = offset;
+        try
+        {
+            DataOutputStream dos = new DataOutputStream(new FileOutputStream(
+                    infoFile));
+            try
+            {
+                dos.writeUTF(etag);
+                dos.writeLong(offset);
+            }
+            finally
+            {
+                dos.close();
+            }
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    public void complete() throws IOException
+    {
+        infoFile.delete();
+        if (target.exists() && !target.delete())
+        {
+            throw new IOException("Unable to replace " + target);
+        }
+        if (!partFile.renameTo(target))
+        {
+            throw new IOException("Unable to move " + partFile + " to "
+                    + target);
+        }
+        offset = 0;
+    }
+
+    public void discard()
+    {
+        partFile.delete();
+        infoFile.delete();
+        etag = "";
+        offset = 0;
+    }
+}
@@ -0,0 +1,155 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+public class RangeDecoder
+{
+    public static final short PROB_INIT  = 1024;
+
+    private static final int  TOP_MASK   = 0xFF000000;
+    private static final int  MODEL_BITS = 11;
+    private static final int  MOVE_BITS  = 5;
+
+    private final InputStream in;
+    private final byte[]      buffer;
+    private int               position;
+    private int               limit;
+    private int               range;
+    private int               code;
+
+    public RangeDecoder(InputStream in)
+    {
+        this.in = in;
+        buffer = new byte[8192];
+    }
+
+    public RangeDecoder(int size)
+    {
+        in = null;
+        buffer = new byte[size];
+    }
+
+    public void prepare(DataInputStream input, int size) throws IOException
+    {
+        if ((size < 5) || (size > buffer.length))
+        {
+            throw new IOException("Corrupt LZMA2 chunk");
+        }
+        input.readFully(buffer, 0, size);
+        position = 0;
+        limit = size;
+        init();
+    }
+
+    public void init() throws IOException
+    {
+        if (next() != 0)
+        {
+            throw new IOException("Corrupt LZMA data");
+        }
+        code = (next() << 24) | (next() << 16) | (next() << 8) | next();
+        range = 0xFFFFFFFF;
+    }
+
+    public boolean isFinished()
+    {
+        return (position == limit) && (code == 0);
+    }
+
+    public static void initProbs(short[] probs)
+    {
+        Arrays.fill(probs, PROB_INIT);
+    }
+
+    public void normalize() throws IOException
+    {
+        if ((range & TOP_MASK) == 0)
+        {
+            code = (code << 8) | next();
+            range <<= 8;
+        }
+    }
+
+    public int decodeBit(short[] probs, int index) throws IOException
+    {
+        normalize();
+
+        int prob = probs[index];
+        int bound = (range >>> MODEL_BITS) * prob;
+
+        if ((code ^ 0x80000000) < (bound ^ 0x80000000))
+        {
+            range = bound;
+            probs[index] = (short) (prob + (((1 << MODEL_BITS) - prob) >>> MOVE_BITS));
+            return 0;
+        }
+        range -= bound;
+        code -= bound;
+        probs[index] = (short) (prob - (prob >>> MOVE_BITS));
+        return 1;
+    }
+
+    public int decodeBitTree(short[] probs) throws IOException
+    {
+        int symbol = 1;
+        do
+        {
+            symbol = (symbol << 1) | decodeBit(probs, symbol);
+        } while (symbol < probs.length);
+
+        return symbol - probs.length;
+    }
+
+    public int decodeReverseBitTree(short[] probs) throws IOException
+    {
+        int symbol = 1;
+        int i = 0;
+        int result = 0;
+        do
+        {
+            int bit = decodeBit(probs, symbol);
+            symbol = (symbol << 1) | bit;
+            result |= bit << i++;
+        } while (symbol < probs.length);
+
+        return result;
+    }
+
+    public int decodeDirectBits(int count) throws IOException
+    {
+        int result = 0;
+        do
+        {
+            normalize();
+
+            range >>>= 1;
+            int t = (code - range) >>> 31;
+            code -= range & (t - 1);
+            result = (result << 1) | (1 - t);
+        } while (--count != 0);
+
+        return result;
+    }
+
+    private int next() throws IOException
+    {
+        if (position == limit)
+        {
+            if (in == null)
+            {
+                throw new EOFException("Truncated LZMA data");
+            }
+            position = 0;
+            limit = Math.max(0, in.read(buffer, 0, buffer.length));
+            if (limit == 0)
+            {
+                throw new EOFException("Truncated LZMA data");
+            }
+        }
+        return buffer[position++] & 0xFF;
+    }
+}
@@ -0,0 +1,71 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+public class RateEstimator
+{
+    private static final long INTERVAL   = 250;
+
+    private final double      timeConstant;
+    private double            rate       = -1;
+    private long              lastBytes;
+    private long              lastTime;
+    private long              lastActive;
+
+    public RateEstimator(long timeConstant)
+    {
+        this.timeConstant = Math.max(timeConstant, 1);
+    }
+
+    public synchronized void sample(long bytes, long now)
+    {
+        if (lastTime == 0)
+        {
+            lastBytes = bytes;
+            lastTime = now;
+            lastActive = now;
+            return;
+        }
+
+        long elapsed = now - lastTime;
+        if (elapsed < INTERVAL)
+        {
+            return;
+        }
+
+        double instant = ((bytes - lastBytes) * 1000.0) / elapsed;
+        if (rate < 0)
+        {
+            rate = instant;
+        }
+        else
+        {
+            double alpha = 1.0 - Math.exp(-elapsed / timeConstant);
+            rate += alpha * (instant - rate);
+        }
+
+        if (bytes > lastBytes)
+        {
+            lastActive = now;
+        }
+        lastBytes = bytes;
+        lastTime = now;
+    }
+
+    public synchronized double getRate()
+    {
+        return Math.max(rate, 0);
+    }
+
+    public synchronized long getEta(long remaining)
+    {
+        if (rate <= 0)
+        {
+            return -1;
+        }
+        return (long) ((Math.max(remaining, 0) * 1000.0) / rate);
+    }
+
+    public synchronized long getIdleTime(long now)
+    {
+        return lastTime == 0 ? 0 : now - lastActive;
+    }
+}
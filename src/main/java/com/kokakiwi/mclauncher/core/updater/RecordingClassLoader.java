@@ -0,0 +1,70 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+public class RecordingClassLoader extends URLClassLoader
+{
+    private final List<String> loaded = new ArrayList<String>();
+
+    public RecordingClassLoader(URL[] urls)
+    {
+        super(urls);
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException
+    {
+        Class<?> clazz = super.findClass(name);
+        synchronized (loaded)
+        {
+            loaded.add(name.replace('.', '/') + ".class");
+        }
+        return clazz;
+    }
+
+    public void saveOrder(File file) throws IOException
+    {
+        Set<String> order = new LinkedHashSet<String>(
+                JarRepacker.readOrder(file));
+        int known = order.size();
+        synchronized (loaded)
+        {
+            order.addAll(loaded);
+        }
+        if (order.size() == known)
+        {
+            return;
+        }
+
+        StringBuilder data = new StringBuilder();
+        for (String name : order)
+        {
+            data.append(name).append('\n');
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+        try
+        {
+            out.write(data.toString().getBytes("UTF-8"));
+        }
+        finally
+        {
+            out.close();
+        }
+        if ((file.exists() && !file.delete()) || !temp.renameTo(file))
+        {
+            temp.delete();
+            throw new IOException("Unable to replace " + file);
+        }
+    }
+}
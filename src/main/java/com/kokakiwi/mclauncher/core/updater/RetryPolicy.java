@@ -0,0 +1,205 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.PrintStream;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RetryPolicy
+{
+    private static final long          PROBE_POLL    = 1000;
+
+    private final int                  attempts;
+    private final long                 baseDelay;
+    private final long                 maxDelay;
+    private final int                  threshold;
+    private final long                 cooldown;
+    private final Random               random        = new Random();
+    private final Map<String, Breaker> breakers      = new HashMap<String, Breaker>();
+
+    private final AtomicInteger        retries       = new AtomicInteger();
+    private final AtomicLong           waited        = new AtomicLong();
+    private final AtomicInteger        trips         = new AtomicInteger();
+    private final AtomicInteger        shortCircuits = new AtomicInteger();
+
+    public RetryPolicy(int attempts, long baseDelay, long maxDelay,
+            int threshold, long cooldown)
+    {
+        this.attempts = Math.max(1, attempts);
+        this.baseDelay = Math.max(0, baseDelay);
+        this.maxDelay = Math.max(this.baseDelay, maxDelay);
+        this.threshold = Math.max(1, threshold);
+        this.cooldown = Math.max(0, cooldown);
+    }
+
+    public int getAttempts()
+    {
+        return attempts;
+    }
+
+    public long getDelay(int failures)
+    {
+        long ceiling = baseDelay;
+        for (int i = 1; (i < failures) && (ceiling < maxDelay); i++)
+        {
+            ceiling *= 2;
+        }
+        ceiling = Math.min(ceiling, maxDelay);
+        if (ceiling <= 0)
+        {
+            return 0;
+        }
+
+        double jitter;
+        synchronized (random)
+        {
+            jitter = random.nextDouble();
+        }
+        return (ceiling / 2) + (long) (jitter * ((ceiling + 1) / 2));
+    }
+
+    public void backoff(URL previous, URL next, int failures)
+            throws InterruptedException
+    {
+        retries.incrementAndGet();
+        synchronized (this)
+        {
+            if (!next.getHost().equals(previous.getHost())
+                    && !breakers.containsKey(next.getHost()))
+            {
+                return;
+            }
+        }
+
+        long delay = getDelay(failures);
+        if (delay > 0)
+        {
+            waited.addAndGet(delay);
+            Thread.sleep(delay);
+        }
+    }
+
+    public synchronized int select(List<URL> candidates, int preferred)
+            throws InterruptedException
+    {
+        long started = System.currentTimeMillis();
+        try
+        {
+            boolean held = false;
+            while (true)
+            {
+                long wait = Long.MAX_VALUE;
+                for (int i = 0; i < candidates.size(); i++)
+                {
+                    int index = (preferred + i) % candidates.size();
+                    long remaining = getWaitTime(candidates.get(index));
+                    if (remaining == 0)
+                    {
+                        claim(candidates.get(index));
+                        if (held || (index != preferred))
+                        {
+                            shortCircuits.incrementAndGet();
+                        }
+                        return index;
+                    }
+                    wait = Math.min(wait, remaining);
+                }
+                held = true;
+                wait(wait);
+            }
+        }
+        finally
+        {
+            waited.addAndGet(System.currentTimeMillis() - started);
+        }
+    }
+
+    public synchronized void succeeded(URL url)
+    {
+        breakers.remove(url.getHost());
+        notifyAll();
+    }
+
+    public synchronized void failed(URL url)
+    {
+        Breaker breaker = breakers.get(url.getHost());
+        if (breaker == null)
+        {
+            breaker = new Breaker();
+            breakers.put(url.getHost(), breaker);
+        }
+        breaker.failures++;
+        if (breaker.probing || (breaker.failures >= threshold))
+        {
+            if (breaker.probing || (breaker.openedAt == 0))
+            {
+                trips.incrementAndGet();
+            }
+            breaker.openedAt = System.currentTimeMillis();
+            breaker.probing = false;
+        }
+        notifyAll();
+    }
+
+    private long getWaitTime(URL url)
+    {
+        Breaker breaker = breakers.get(url.getHost());
+        if ((breaker == null) || (breaker.openedAt == 0))
+        {
+            return 0;
+        }
+        if (breaker.probing)
+        {
+            return PROBE_POLL;
+        }
+        return Math.max(0, (breaker.openedAt + cooldown)
+                - System.currentTimeMillis());
+    }
+
+    private void claim(URL url)
+    {
+        Breaker breaker = breakers.get(url.getHost());
+        if ((breaker != null) && (breaker.openedAt != 0))
+        {
+            breaker.probing = true;
+        }
+    }
+
+    public int getRetries()
+    {
+        return retries.get();
+    }
+
+    public long getWaited()
+    {
+        return waited.get();
+    }
+
+    public int getTrips()
+    {
+        return trips.get();
+    }
+
+    public int getShortCircuits()
+    {
+        return shortCircuits.get();
+    }
+
+    public void print(PrintStream out)
+    {
+        out.println("Retries: " + getRetries() + " (" + getWaited()
+                + " ms backing off), breaker trips: " + getTrips()
+                + ", short-circuited requests: " + getShortCircuits());
+    }
+
+    private static class Breaker
+    {
+        private int     failures;
+        private long    openedAt;
+        private boolean probing;
+    }
+}
@@ -0,0 +1,156 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SegmentedDownload
+{
+    private final HttpClient client;
+    private final URL        url;
+    private final File       target;
+    private final long       length;
+    private final int        segments;
+    private final AtomicLong transferred = new AtomicLong();
+    private TransferListener listener;
+
+    public SegmentedDownload(HttpClient client, URL url, File target,
+            long length, int segments)
+    {
+        this.client = client;
+        this.url = url;
+        this.target = target;
+        this.length = length;
+        this.segments = Math.max(1, segments);
+    }
+
+    public static boolean isSupported(HttpURLConnection connection)
+    {
+        String ranges = connection.getHeaderField("Accept-Ranges");
+        return (ranges != null) && ranges.toLowerCase().contains("bytes");
+    }
+
+    public void setListener(TransferListener listener)
+    {
+        this.listener = listener;
+    }
+
+    public long getTransferred()
+    {
+        return transferred.get();
+    }
+
+    public void run() throws IOException
+    {
+        RandomAccessFile file = new RandomAccessFile(target, "rw");
+        try
+        {
+            file.setLength(length);
+        }
+        finally
+        {
+            file.close();
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(segments);
+        List<Future<Object>> tasks = new ArrayList<Future<Object>>();
+        long segmentSize = (length + segments - 1) / segments;
+
+        for (long start = 0; start < length; start += segmentSize)
+        {
+            final long from = start;
+            final long to = Math.min(start + segmentSize, length) - 1;
+            tasks.add(pool.submit(new Callable<Object>() {
+                public Object call() throws Exception
+                {
+                    downloadRange(from, to);
+                    return null;
+                }
+            }));
+        }
+        pool.shutdown();
+
+        try
+        {
+            for (Future<Object> task : tasks)
+            {
+                task.get();
+            }
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException)
+            {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to download " + url + ": "
+                    + e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            throw new IOException("Interrupted while downloading " + url);
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    private void downloadRange(long from, long to) throws IOException
+    {
+        URLConnection connection = client.open(url);
+        connection.setRequestProperty("Range", "bytes=" + from + "-" + to);
+
+        if (client.getResponseCode(connection) != HttpURLConnection.HTTP_PARTIAL)
+        {
+            client.release(connection);
+            throw new IOException("Range request refused by " + url.getHost());
+        }
+
+        InputStream in = client.getInputStream(connection);
+        RandomAccessFile out = new RandomAccessFile(target, "rw");
+        try
+        {
+            out.seek(from);
+
+            byte[] buffer = new byte[65536];
+            long remaining = (to - from) + 1;
+            int read;
+            while ((remaining > 0)
+                    && ((read = in.read(buffer, 0,
+                            (int) Math.min(buffer.length, remaining))) != -1))
+            {
+                out.write(buffer, 0, read);
+                remaining -= read;
+                transferred.addAndGet(read);
+                if (listener != null)
+                {
+                    listener.bytesRead(read);
+                }
+            }
+
+            if (remaining > 0)
+            {
+                throw new IOException("Segment " + from + "-" + to + " of "
+                        + url + " ended early");
+            }
+        }
+        finally
+        {
+            in.close();
+            out.close();
+        }
+    }
+}
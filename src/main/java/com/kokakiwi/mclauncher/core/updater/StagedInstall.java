@@ -0,0 +1,197 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+public class StagedInstall
+{
+    private static final String      COMPLETE = ".complete";
+    private static final Set<String> COPIED   = new HashSet<String>(
+                                                      Arrays.asList("version",
+                                                              "journal",
+                                                              "mirrors",
+                                                              "classorder",
+                                                              "repacked"));
+    private static final Set<String> SKIPPED  = new HashSet<String>(
+                                                      Arrays.asList("prefetch",
+                                                              "journal.tmp"));
+
+    private final File               live;
+    private final File               staging;
+    private final File               backup;
+
+    public StagedInstall(File live)
+    {
+        this.live = live.getAbsoluteFile();
+        staging = new File(this.live.getPath() + ".new");
+        backup = new File(this.live.getPath() + ".old");
+    }
+
+    public File getStaging()
+    {
+        return staging;
+    }
+
+    public void recover() throws IOException
+    {
+        File marker = new File(staging, COMPLETE);
+        if (!live.exists())
+        {
+            if (marker.exists())
+            {
+                rename(staging, live);
+            }
+            else if (backup.exists())
+            {
+                rename(backup, live);
+            }
+        }
+        else if (marker.exists())
+        {
+            try
+            {
+                swap();
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+                marker.delete();
+            }
+        }
+        new File(live, COMPLETE).delete();
+        if (backup.exists())
+        {
+            delete(backup);
+        }
+    }
+
+    public File prepare() throws IOException
+    {
+        if (staging.isDirectory())
+        {
+            return staging;
+        }
+
+        File temp = new File(live.getPath() + ".tmp");
+        if (temp.exists())
+        {
+            delete(temp);
+        }
+        if (!temp.mkdirs())
+        {
+            throw new IOException("Unable to create " + temp);
+        }
+        if (live.isDirectory())
+        {
+            seed(live, temp);
+        }
+        rename(temp, staging);
+        return staging;
+    }
+
+    public void commit() throws IOException
+    {
+        File marker = new File(staging, COMPLETE);
+        if (!marker.exists() && !marker.createNewFile())
+        {
+            throw new IOException("Unable to mark " + staging + " complete");
+        }
+
+        try
+        {
+            swap();
+        }
+        catch (IOException e)
+        {
+            marker.delete();
+            throw e;
+        }
+
+        new File(live, COMPLETE).delete();
+        if (backup.exists())
+        {
+            delete(backup);
+        }
+    }
+
+    private void swap() throws IOException
+    {
+        if (backup.exists())
+        {
+            delete(backup);
+        }
+        if (live.exists())
+        {
+            rename(live, backup);
+        }
+        try
+        {
+            rename(staging, live);
+        }
+        catch (IOException e)
+        {
+            if (backup.exists() && !live.exists())
+            {
+                backup.renameTo(live);
+            }
+            throw e;
+        }
+    }
+
+    private void seed(File from, File to) throws IOException
+    {
+        File[] files = from.listFiles();
+        if (files == null)
+        {
+            return;
+        }
+
+        for (File file : files)
+        {
+            String name = file.getName();
+            File target = new File(to, name);
+            if (SKIPPED.contains(name) || name.endsWith(".part")
+                    || name.endsWith(".part.info"))
+            {
+                continue;
+            }
+
+            if (file.isDirectory())
+            {
+                if (!target.mkdir())
+                {
+                    throw new IOException("Unable to create " + target);
+                }
+                seed(file, target);
+            }
+            else if (COPIED.contains(name) || !ContentStore.link(file, target))
+            {
+                ChannelIO.copy(file, target);
+            }
+        }
+    }
+
+    private static void rename(File from, File to) throws IOException
+    {
+        if (!from.renameTo(to))
+        {
+            throw new IOException("Unable to move " + from + " to " + to);
+        }
+    }
+
+    private static void delete(File file)
+    {
+        File[] files = file.listFiles();
+        if (files != null)
+        {
+            for (File child : files)
+            {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,6 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+public interface TransferListener
+{
+    public void bytesRead(int amount);
+}
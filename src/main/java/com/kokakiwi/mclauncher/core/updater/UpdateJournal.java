@@ -0,0 +1,257 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+public class UpdateJournal
+{
+    public static final char          PENDING = 'P';
+    public static final char          DONE    = 'D';
+
+    private final File                file;
+    private final boolean             readOnly;
+    private final Map<String, Record> records = new LinkedHashMap<String, Record>();
+    private FileOutputStream          out;
+    private int                       appended;
+
+    public UpdateJournal(File file, File legacy) throws IOException
+    {
+        this(file, legacy, false);
+    }
+
+    public UpdateJournal(File file, File legacy, boolean readOnly)
+            throws IOException
+    {
+        this.file = file;
+        this.readOnly = readOnly;
+
+        if (file.exists())
+        {
+            replay();
+        }
+        else if ((legacy != null) && legacy.exists())
+        {
+            migrate(legacy);
+        }
+    }
+
+    public synchronized String getHash(String name)
+    {
+        Record record = records.get(name);
+        if ((record == null) || (record.state != DONE))
+        {
+            return null;
+        }
+        return record.hash;
+    }
+
+    public synchronized void begin(String name) throws IOException
+    {
+        append(new Record(PENDING, name, "", -1), false);
+    }
+
+    public synchronized void complete(String name, String hash, long size)
+            throws IOException
+    {
+        append(new Record(DONE, name, hash == null ? "" : hash, size), true);
+    }
+
+    public synchronized void compact() throws IOException
+    {
+        close();
+
+        File temp = new File(file.getPath() + ".tmp");
+        OutputStream output = new FileOutputStream(temp);
+        try
+        {
+            for (Record record : records.values())
+            {
+                output.write(record.toString().getBytes("UTF-8"));
+            }
+            ((FileOutputStream) output).getFD().sync();
+        }
+        finally
+        {
+            output.close();
+        }
+
+        if ((file.exists() && !file.delete()) || !temp.renameTo(file))
+        {
+            throw new IOException("Unable to replace " + file);
+        }
+        appended = 0;
+    }
+
+    public synchronized void close()
+    {
+        if (out != null)
+        {
+            try
+            {
+                out.close();
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+            out = null;
+        }
+    }
+
+    private void append(Record record, boolean sync) throws IOException
+    {
+        if (readOnly)
+        {
+            throw new IOException(file + " is opened read-only");
+        }
+        records.put(record.name, record);
+
+        if (appended > (64 + (records.size() * 4)))
+        {
+            compact();
+            return;
+        }
+
+        if (out == null)
+        {
+            out = new FileOutputStream(file, true);
+        }
+        out.write(record.toString().getBytes("UTF-8"));
+        if (sync)
+        {
+            out.getFD().sync();
+        }
+        appended++;
+    }
+
+    private void replay() throws IOException
+    {
+        boolean torn = false;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            if (raf.length() > 0)
+            {
+                raf.seek(raf.length() - 1);
+                torn = raf.read() != '\n';
+            }
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), "UTF-8"));
+        int lines = 0;
+        try
+        {
+            String line = reader.readLine();
+            while (line != null)
+            {
+                String next = reader.readLine();
+                lines++;
+                Record record = (next == null) && torn ? null : Record
+                        .parse(line);
+                if (record != null)
+                {
+                    records.put(record.name, record);
+                }
+                line = next;
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+
+        appended = lines;
+        if (!readOnly && (torn || (appended > (64 + (records.size() * 4)))))
+        {
+            compact();
+        }
+    }
+
+    private void migrate(File legacy) throws IOException
+    {
+        Properties md5s = new Properties();
+        FileInputStream fis = new FileInputStream(legacy);
+        try
+        {
+            md5s.load(fis);
+        }
+        finally
+        {
+            fis.close();
+        }
+
+        Enumeration<?> names = md5s.propertyNames();
+        while (names.hasMoreElements())
+        {
+            String name = (String) names.nextElement();
+            String hash = md5s.getProperty(name);
+            File installed = new File(legacy.getParentFile(), name);
+            records.put(name, new Record(DONE, name, hash,
+                    installed.exists() ? installed.length() : -1));
+        }
+        if (!readOnly)
+        {
+            compact();
+            legacy.delete();
+        }
+    }
+
+    private static class Record
+    {
+        private final char   state;
+        private final String name;
+        private final String hash;
+        private final long   size;
+
+        public Record(char state, String name, String hash, long size)
+        {
+            this.state = state;
+            this.name = name;
+            this.hash = hash;
+            this.size = size;
+        }
+
+        public static Record parse(String line)
+        {
+            String[] fields = line.split(" ", 4);
+            if ((fields.length != 4) || (fields[0].length() != 1)
+                    || ((fields[0].charAt(0) != PENDING) && (fields[0]
+                            .charAt(0) != DONE)))
+            {
+                return null;
+            }
+            try
+            {
+                return new Record(fields[0].charAt(0), fields[3],
+                        fields[2].equals("-") ? "" : fields[2],
+                        Long.parseLong(fields[1]));
+            }
+            catch (NumberFormatException e)
+            {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return state + " " + size + " " + (hash.length() == 0 ? "-" : hash)
+                    + " " + name + "\n";
+        }
+    }
+}
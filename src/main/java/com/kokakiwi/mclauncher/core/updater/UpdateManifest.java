@@ -0,0 +1,123 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.kokakiwi.mclauncher.utils.Configuration;
+
+public class UpdateManifest
+{
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    public static UpdateManifest load(HttpClient client, URL url)
+            throws Exception
+    {
+        InputStream in = client.get(url);
+        Configuration data = new Configuration();
+        try
+        {
+            data.load(in, "yaml");
+        }
+        finally
+        {
+            in.close();
+        }
+
+        Map<String, Object> files = data.getNode("files");
+        if (files == null)
+        {
+            throw new Exception("Invalid update manifest " + url);
+        }
+
+        UpdateManifest manifest = new UpdateManifest();
+        for (String name : files.keySet())
+        {
+            manifest.entries.put(name, new Entry(name, files.get(name)));
+        }
+        return manifest;
+    }
+
+    public Entry get(String name)
+    {
+        return entries.get(name);
+    }
+
+    public Map<String, Entry> getEntries()
+    {
+        return entries;
+    }
+
+    public static class Entry
+    {
+        private final String       name;
+        private final long         size;
+        private final String       md5;
+        private final String       sha256;
+        private final int          chunkSize;
+        private final List<String> chunks;
+
+        @SuppressWarnings("unchecked")
+        public Entry(String name, Object node)
+        {
+            this.name = name;
+
+            Map<String, Object> values = node instanceof Map ? (Map<String, Object>) node
+                    : new HashMap<String, Object>();
+            Object size = values.get("size");
+            Object md5 = values.get("md5");
+            Object sha256 = values.get("sha256");
+            Object chunkSize = values.get("chunkSize");
+            Object chunks = values.get("chunks");
+
+            this.size = size instanceof Number ? ((Number) size).longValue()
+                    : -1;
+            this.md5 = md5 == null ? null : md5.toString().toLowerCase();
+            this.sha256 = sha256 == null ? null : sha256.toString()
+                    .toLowerCase();
+            this.chunkSize = chunkSize instanceof Number ? ((Number) chunkSize)
+                    .intValue() : -1;
+            this.chunks = new ArrayList<String>();
+            if (chunks instanceof List)
+            {
+                for (Object chunk : (List<Object>) chunks)
+                {
+                    this.chunks.add(String.valueOf(chunk).toLowerCase());
+                }
+            }
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public long getSize()
+        {
+            return size;
+        }
+
+        public String getMd5()
+        {
+            return md5;
+        }
+
+        public String getSha256()
+        {
+            return sha256;
+        }
+
+        public int getChunkSize()
+        {
+            return chunkSize;
+        }
+
+        public List<String> getChunks()
+        {
+            return chunks;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.util.concurrent.CountDownLatch;
+
+public class UpdatePrefetcher
+{
+    private final File           directory;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private volatile boolean     cancelled;
+
+    public UpdatePrefetcher(File directory)
+    {
+        this.directory = directory;
+    }
+
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    public void finish()
+    {
+        finished.countDown();
+    }
+
+    public void cancel()
+    {
+        cancelled = true;
+        boolean interrupted = false;
+        while (true)
+        {
+            try
+            {
+                finished.await();
+                break;
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean stage(HttpClient client, URL url, String fileName,
+            String md5) throws Exception
+    {
+        File staged = new File(directory, fileName);
+        if (staged.exists() && Digests.md5(staged).equals(md5))
+        {
+            return true;
+        }
+        if (!directory.exists() && !directory.mkdirs())
+        {
+            throw new IOException("Unable to create " + directory);
+        }
+
+        PartialDownload part = new PartialDownload(staged);
+        MessageDigest m = MessageDigest.getInstance("MD5");
+        InputStream in = client.get(url);
+        OutputStream out = part.open(0, md5);
+        long offset = 0;
+        try
+        {
+            byte[] buffer = new byte[BufferPool.BUFFER_SIZE];
+            int read;
+            while (!cancelled && ((read = in.read(buffer)) != -1))
+            {
+                m.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+                offset += read;
+            }
+        }
+        catch (IOException e)
+        {
+            out.close();
+            part.checkpoint(offset);
+            throw e;
+        }
+        finally
+        {
+            in.close();
+            out.close();
+        }
+
+        if (cancelled)
+        {
+            part.checkpoint(offset);
+            return false;
+        }
+        if (!Digests.matches(m.digest(), md5))
+        {
+            part.discard();
+            return false;
+        }
+        part.complete();
+        return true;
+    }
+
+    public boolean handOver(String fileName, String md5, File target)
+    {
+        PartialDownload staged = new PartialDownload(new File(directory,
+                fileName));
+        if ((md5 == null) || !staged.canResume()
+                || !md5.equals(staged.getETag()))
+        {
+            return false;
+        }
+
+        PartialDownload existing = new PartialDownload(target);
+        if (existing.canResume()
+                && (existing.getOffset() >= staged.getOffset()))
+        {
+            staged.discard();
+            return false;
+        }
+
+        existing.discard();
+        File info = new File(staged.getPartFile().getPath() + ".info");
+        if (!staged.getPartFile().renameTo(existing.getPartFile())
+                || !info.renameTo(new File(existing.getPartFile().getPath()
+                        + ".info")))
+        {
+            staged.discard();
+            existing.discard();
+            return false;
+        }
+        return true;
+    }
+
+    public File take(String fileName, String md5)
+    {
+        File staged = new File(directory, fileName);
+        if (!staged.exists())
+        {
+            return null;
+        }
+        try
+        {
+            if ((md5 != null) && Digests.md5(staged).equals(md5))
+            {
+                return staged;
+            }
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+        }
+        staged.delete();
+        return null;
+    }
+
+    public void discard()
+    {
+        File[] files = directory.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
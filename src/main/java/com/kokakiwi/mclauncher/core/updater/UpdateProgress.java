@@ -0,0 +1,70 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class UpdateProgress
+{
+    public static enum Phase
+    {
+        IDLE, DOWNLOADING, EXTRACTING
+    }
+
+    private final AtomicLong done  = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private volatile Phase   phase = Phase.IDLE;
+    private volatile String  file  = "";
+
+    public void begin(Phase phase, long total)
+    {
+        done.set(0);
+        this.total.set(total);
+        file = "";
+        this.phase = phase;
+    }
+
+    public void finish()
+    {
+        phase = Phase.IDLE;
+        file = "";
+    }
+
+    public void setFile(String file)
+    {
+        this.file = file;
+    }
+
+    public long add(long amount)
+    {
+        return done.addAndGet(amount);
+    }
+
+    public Phase getPhase()
+    {
+        return phase;
+    }
+
+    public String getFile()
+    {
+        return file;
+    }
+
+    public long getDone()
+    {
+        return done.get();
+    }
+
+    public long getTotal()
+    {
+        return total.get();
+    }
+
+    public int getPercent()
+    {
+        long max = total.get();
+        if (max <= 0)
+        {
+            return 0;
+        }
+        return (int) Math.max(0, Math.min(100, (done.get() * 100) / max));
+    }
+}
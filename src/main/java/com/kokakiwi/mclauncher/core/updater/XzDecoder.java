@@ -0,0 +1,323 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class XzDecoder
+{
+    private final File        source;
+    private final List<Block> blocks = new ArrayList<Block>();
+    private long              size;
+
+    public XzDecoder(File source) throws IOException
+    {
+        this.source = source;
+
+        RandomAccessFile raf = new RandomAccessFile(source, "r");
+        try
+        {
+            readIndexes(raf);
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    public static boolean isXz(File file) throws IOException
+    {
+        byte[] header = new byte[XzFormat.STREAM_HEADER_SIZE];
+        FileInputStream in = new FileInputStream(file);
+        try
+        {
+            int length = 0;
+            int read;
+            while ((length < header.length)
+                    && ((read = in.read(header, length, header.length - length)) != -1))
+            {
+                length += read;
+            }
+            return XzFormat.isXz(header, length);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    public int getBlockCount()
+    {
+        return blocks.size();
+    }
+
+    public long getSize()
+    {
+        return size;
+    }
+
+    public void decode(File target, int threads) throws IOException
+    {
+        RandomAccessFile input = new RandomAccessFile(source, "r");
+        RandomAccessFile output = new RandomAccessFile(target, "rw");
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1,
+                Math.min(threads, blocks.size())));
+        try
+        {
+            output.setLength(size);
+
+            final FileChannel in = input.getChannel();
+            final FileChannel out = output.getChannel();
+            List<Future<Object>> tasks = new ArrayList<Future<Object>>();
+            for (final Block block : blocks)
+            {
+                tasks.add(pool.submit(new Callable<Object>() {
+                    public Object call() throws Exception
+                    {
+                        decodeBlock(in, out, block);
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<Object> task : tasks)
+            {
+                try
+                {
+                    task.get();
+                }
+                catch (ExecutionException e)
+                {
+                    if (e.getCause() instanceof IOException)
+                    {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IOException(e.getCause().toString());
+                }
+                catch (InterruptedException e)
+                {
+                    throw new IOException("Interrupted");
+                }
+            }
+        }
+        finally
+        {
+            pool.shutdownNow();
+            input.close();
+            output.close();
+        }
+    }
+
+    private void decodeBlock(FileChannel in, FileChannel out, Block block)
+            throws IOException
+    {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(
+                new ChannelInputStream(in, block.offset, block.unpaddedSize),
+                BufferPool.BUFFER_SIZE));
+        XzFormat.BlockHeader header = XzFormat.readBlockHeader(data,
+                data.readUnsignedByte());
+        if ((header.uncompressedSize >= 0)
+                && (header.uncompressedSize != block.uncompressedSize))
+        {
+            throw new IOException("Corrupt XZ block");
+        }
+
+        XzFormat.Check check = new XzFormat.Check(block.checkType);
+        Lzma2InputStream lzma2 = new Lzma2InputStream(data, header.dictSize,
+                block.uncompressedSize);
+        byte[] buffer = new byte[BufferPool.BUFFER_SIZE];
+        long position = block.target;
+        int read;
+        while ((read = lzma2.read(buffer, 0, buffer.length)) != -1)
+        {
+            if ((position + read) > (block.target + block.uncompressedSize))
+            {
+                throw new IOException("Corrupt XZ block");
+            }
+            check.update(buffer, 0, read);
+
+            ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+            while (chunk.hasRemaining())
+            {
+                position += out.write(chunk, position);
+            }
+        }
+        if (position != (block.target + block.uncompressedSize))
+        {
+            throw new IOException("Corrupt XZ block");
+        }
+
+        byte[] stored = new byte[check.getSize()];
+        ByteBuffer storedBuffer = ByteBuffer.wrap(stored);
+        long checkOffset = (block.offset + XzFormat.roundUp(block.unpaddedSize))
+                - stored.length;
+        while (storedBuffer.hasRemaining())
+        {
+            if (in.read(storedBuffer, checkOffset + storedBuffer.position()) == -1)
+            {
+                throw new IOException("Truncated XZ block");
+            }
+        }
+        if (!check.matches(stored))
+        {
+            throw new IOException("XZ integrity check failed");
+        }
+    }
+
+    private void readIndexes(RandomAccessFile raf) throws IOException
+    {
+        long end = raf.length();
+        if ((end & 3) != 0)
+        {
+            throw new IOException("Corrupt XZ file");
+        }
+
+        List<Block> streamBlocks = new ArrayList<Block>();
+        byte[] footer = new byte[XzFormat.STREAM_HEADER_SIZE];
+        while (end > 0)
+        {
+            raf.seek(end - 4);
+            if (raf.readInt() == 0)
+            {
+                end -= 4;
+                continue;
+            }
+
+            if (end < (XzFormat.STREAM_HEADER_SIZE * 2))
+            {
+                throw new IOException("Corrupt XZ file");
+            }
+            raf.seek(end - footer.length);
+            raf.readFully(footer);
+            int checkType = XzFormat.decodeStreamFooter(footer);
+
+            long indexSize = XzFormat.getBackwardSize(footer);
+            long indexOffset = end - footer.length - indexSize;
+            if (indexOffset < XzFormat.STREAM_HEADER_SIZE)
+            {
+                throw new IOException("Corrupt XZ index");
+            }
+            byte[] index = new byte[(int) indexSize];
+            raf.seek(indexOffset);
+            raf.readFully(index);
+            if (index[0] != 0)
+            {
+                throw new IOException("Corrupt XZ index");
+            }
+            ByteArrayInputStream indexInput = new ByteArrayInputStream(index,
+                    1, index.length - 1);
+            List<long[]> records = XzFormat.readIndex(indexInput);
+            if (indexInput.available() != 0)
+            {
+                throw new IOException("Corrupt XZ index");
+            }
+
+            long blocksSize = 0;
+            for (long[] record : records)
+            {
+                blocksSize += XzFormat.roundUp(record[0]);
+            }
+            long streamOffset = indexOffset - blocksSize
+                    - XzFormat.STREAM_HEADER_SIZE;
+            if (streamOffset < 0)
+            {
+                throw new IOException("Corrupt XZ index");
+            }
+
+            byte[] header = new byte[XzFormat.STREAM_HEADER_SIZE];
+            raf.seek(streamOffset);
+            raf.readFully(header);
+            if (XzFormat.decodeStreamHeader(header) != checkType)
+            {
+                throw new IOException("Corrupt XZ stream header");
+            }
+
+            streamBlocks.clear();
+            long offset = streamOffset + XzFormat.STREAM_HEADER_SIZE;
+            for (long[] record : records)
+            {
+                streamBlocks.add(new Block(offset, record[0], record[1],
+                        checkType));
+                offset += XzFormat.roundUp(record[0]);
+            }
+            blocks.addAll(0, streamBlocks);
+            end = streamOffset;
+        }
+
+        for (Block block : blocks)
+        {
+            block.target = size;
+            size += block.uncompressedSize;
+        }
+    }
+
+    private static class Block
+    {
+        private final long offset;
+        private final long unpaddedSize;
+        private final long uncompressedSize;
+        private final int  checkType;
+        private long       target;
+
+        public Block(long offset, long unpaddedSize, long uncompressedSize,
+                int checkType)
+        {
+            this.offset = offset;
+            this.unpaddedSize = unpaddedSize;
+            this.uncompressedSize = uncompressedSize;
+            this.checkType = checkType;
+        }
+    }
+
+    private static class ChannelInputStream extends InputStream
+    {
+        private final FileChannel channel;
+        private final long        end;
+        private long              position;
+
+        public ChannelInputStream(FileChannel channel, long offset, long length)
+        {
+            this.channel = channel;
+            position = offset;
+            end = offset + length;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            if (position >= end)
+            {
+                return -1;
+            }
+            int read = channel.read(
+                    ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)),
+                    position);
+            if (read > 0)
+            {
+                position += read;
+            }
+            return read;
+        }
+    }
+}
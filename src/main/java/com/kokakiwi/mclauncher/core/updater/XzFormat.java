@@ -0,0 +1,299 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Checksum;
+
+public class XzFormat
+{
+    public static final int     STREAM_HEADER_SIZE = 12;
+
+    private static final byte[] HEADER_MAGIC       = { (byte) 0xFD, '7', 'z',
+            'X', 'Z', 0x00 };
+    private static final long   FILTER_LZMA2       = 0x21;
+
+    public static boolean isXz(byte[] header, int length)
+    {
+        if (length < HEADER_MAGIC.length)
+        {
+            return false;
+        }
+        for (int i = 0; i < HEADER_MAGIC.length; i++)
+        {
+            if (header[i] != HEADER_MAGIC[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static int decodeStreamHeader(byte[] header) throws IOException
+    {
+        if (!isXz(header, header.length))
+        {
+            throw new IOException("Not an XZ stream");
+        }
+        if (readInt(header, 8) != crc32(header, 6, 2))
+        {
+            throw new IOException("Corrupt XZ stream header");
+        }
+        return decodeStreamFlags(header, 6);
+    }
+
+    public static int decodeStreamFooter(byte[] footer) throws IOException
+    {
+        if ((footer[10] != 'Y') || (footer[11] != 'Z'))
+        {
+            throw new IOException("Corrupt XZ stream footer");
+        }
+        if (readInt(footer, 0) != crc32(footer, 4, 6))
+        {
+            throw new IOException("Corrupt XZ stream footer");
+        }
+        return decodeStreamFlags(footer, 8);
+    }
+
+    public static long getBackwardSize(byte[] footer)
+    {
+        return ((readInt(footer, 4) & 0xFFFFFFFFL) + 1) * 4;
+    }
+
+    public static int getCheckSize(int checkType)
+    {
+        return checkType == 0 ? 0 : 4 << ((checkType - 1) / 3);
+    }
+
+    public static long roundUp(long size)
+    {
+        return (size + 3) & ~3L;
+    }
+
+    public static BlockHeader readBlockHeader(DataInputStream in, int first)
+            throws IOException
+    {
+        int size = (first + 1) * 4;
+        byte[] header = new byte[size];
+        header[0] = (byte) first;
+        in.readFully(header, 1, size - 1);
+        if (readInt(header, size - 4) != crc32(header, 0, size - 4))
+        {
+            throw new IOException("Corrupt XZ block header");
+        }
+
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(
+                header, 1, size - 5));
+        int flags = data.readUnsignedByte();
+        if ((flags & 0x3C) != 0)
+        {
+            throw new IOException("Unsupported XZ block flags");
+        }
+
+        BlockHeader block = new BlockHeader();
+        block.size = size;
+        block.compressedSize = (flags & 0x40) != 0 ? readVarint(data) : -1;
+        block.uncompressedSize = (flags & 0x80) != 0 ? readVarint(data) : -1;
+
+        int filters = (flags & 0x03) + 1;
+        for (int i = 0; i < filters; i++)
+        {
+            long id = readVarint(data);
+            long propsSize = readVarint(data);
+            if ((id != FILTER_LZMA2) || (filters != 1) || (propsSize != 1))
+            {
+                throw new IOException("Unsupported XZ filter 0x"
+                        + Long.toHexString(id));
+            }
+
+            int props = data.readUnsignedByte() & 0x3F;
+            if (props > 40)
+            {
+                throw new IOException("Invalid LZMA2 dictionary size");
+            }
+            block.dictSize = props == 40 ? 0xFFFFFFFFL
+                    : (2L | (props & 1)) << ((props / 2) + 11);
+        }
+
+        while (data.available() > 0)
+        {
+            if (data.readUnsignedByte() != 0)
+            {
+                throw new IOException("Corrupt XZ block header");
+            }
+        }
+        return block;
+    }
+
+    public static List<long[]> readIndex(InputStream in) throws IOException
+    {
+        CRC32 crc = new CRC32();
+        crc.update(0);
+        CountingInputStream counter = new CountingInputStream(
+                new CheckedInputStream(in, crc), null, null);
+        DataInputStream data = new DataInputStream(counter);
+
+        long count = readVarint(data);
+        List<long[]> records = new ArrayList<long[]>();
+        for (long i = 0; i < count; i++)
+        {
+            long unpaddedSize = readVarint(data);
+            long uncompressedSize = readVarint(data);
+            if (unpaddedSize <= 0)
+            {
+                throw new IOException("Corrupt XZ index");
+            }
+            records.add(new long[] { unpaddedSize, uncompressedSize });
+        }
+
+        while (((counter.getCount() + 1) & 3) != 0)
+        {
+            if (data.readUnsignedByte() != 0)
+            {
+                throw new IOException("Corrupt XZ index");
+            }
+        }
+
+        byte[] stored = new byte[4];
+        new DataInputStream(in).readFully(stored);
+        if (readInt(stored, 0) != (int) crc.getValue())
+        {
+            throw new IOException("Corrupt XZ index");
+        }
+        return records;
+    }
+
+    public static long readVarint(DataInputStream in) throws IOException
+    {
+        int b = in.readUnsignedByte();
+        long value = b & 0x7F;
+        int i = 0;
+        while ((b & 0x80) != 0)
+        {
+            if (++i >= 9)
+            {
+                throw new IOException("Corrupt XZ integer");
+            }
+            b = in.readUnsignedByte();
+            if (b == 0)
+            {
+                throw new IOException("Corrupt XZ integer");
+            }
+            value |= (long) (b & 0x7F) << (i * 7);
+        }
+        return value;
+    }
+
+    private static int decodeStreamFlags(byte[] buf, int off)
+            throws IOException
+    {
+        if ((buf[off] != 0) || ((buf[off + 1] & 0xF0) != 0))
+        {
+            throw new IOException("Unsupported XZ stream flags");
+        }
+        return buf[off + 1] & 0x0F;
+    }
+
+    private static int crc32(byte[] buf, int off, int len)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(buf, off, len);
+        return (int) crc.getValue();
+    }
+
+    private static int readInt(byte[] buf, int off)
+    {
+        return (buf[off] & 0xFF) | ((buf[off + 1] & 0xFF) << 8)
+                | ((buf[off + 2] & 0xFF) << 16) | ((buf[off + 3] & 0xFF) << 24);
+    }
+
+    public static class BlockHeader
+    {
+        public int  size;
+        public long compressedSize;
+        public long uncompressedSize;
+        public long dictSize;
+    }
+
+    public static class Check
+    {
+        private final int           type;
+        private final Checksum      checksum;
+        private final MessageDigest digest;
+
+        public Check(int type) throws IOException
+        {
+            this.type = type;
+
+            Checksum c = null;
+            MessageDigest d = null;
+            if (type == 1)
+            {
+                c = new CRC32();
+            }
+            else if (type == 4)
+            {
+                c = new Crc64();
+            }
+            else if (type == 10)
+            {
+                try
+                {
+                    d = MessageDigest.getInstance("SHA-256");
+                }
+                catch (NoSuchAlgorithmException e)
+                {
+                    throw new IOException(e.toString());
+                }
+            }
+            checksum = c;
+            digest = d;
+        }
+
+        public int getSize()
+        {
+            return getCheckSize(type);
+        }
+
+        public void update(byte[] b, int off, int len)
+        {
+            if (checksum != null)
+            {
+                checksum.update(b, off, len);
+            }
+            else if (digest != null)
+            {
+                digest.update(b, off, len);
+            }
+        }
+
+        public boolean matches(byte[] stored)
+        {
+            if (checksum != null)
+            {
+                long value = checksum.getValue();
+                for (int i = 0; i < stored.length; i++)
+                {
+                    if ((stored[i] & 0xFF) != ((value >>> (8 * i)) & 0xFF))
+                    {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            if (digest != null)
+            {
+                return Arrays.equals(digest.digest(), stored);
+            }
+            return true;
+        }
+    }
+}
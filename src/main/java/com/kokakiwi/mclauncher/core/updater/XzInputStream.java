@@ -0,0 +1,164 @@
+package com.kokakiwi.mclauncher.core.updater;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class XzInputStream extends InputStream
+{
+    private final InputStream          raw;
+    private final CountingInputStream  counter;
+    private final DataInputStream      in;
+    private final byte[]               single = new byte[1];
+    private int                        checkType;
+    private long                       blocks;
+    private XzFormat.BlockHeader       header;
+    private XzFormat.Check             check;
+    private Lzma2InputStream           block;
+    private long                       blockStart;
+    private long                       produced;
+    private boolean                    finished;
+
+    public XzInputStream(InputStream in) throws IOException
+    {
+        raw = in;
+        counter = new CountingInputStream(new BufferedInputStream(in,
+                BufferPool.BUFFER_SIZE), null, null);
+        this.in = new DataInputStream(counter);
+
+        byte[] streamHeader = new byte[XzFormat.STREAM_HEADER_SIZE];
+        this.in.readFully(streamHeader);
+        checkType = XzFormat.decodeStreamHeader(streamHeader);
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (len == 0)
+        {
+            return 0;
+        }
+
+        while (!finished)
+        {
+            if ((block == null) && !nextBlock())
+            {
+                finished = true;
+                break;
+            }
+
+            int read = block.read(b, off, len);
+            if (read > 0)
+            {
+                check.update(b, off, read);
+                produced += read;
+                return read;
+            }
+            finishBlock();
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        raw.close();
+    }
+
+    private boolean nextBlock() throws IOException
+    {
+        while (true)
+        {
+            blockStart = counter.getCount();
+            int first = in.readUnsignedByte();
+            if (first != 0)
+            {
+                header = XzFormat.readBlockHeader(in, first);
+                check = new XzFormat.Check(checkType);
+                block = new Lzma2InputStream(in, header.dictSize,
+                        header.uncompressedSize);
+                produced = 0;
+                blocks++;
+                return true;
+            }
+
+            if (XzFormat.readIndex(in).size() != blocks)
+            {
+                throw new IOException("Corrupt XZ index");
+            }
+            byte[] footer = new byte[XzFormat.STREAM_HEADER_SIZE];
+            in.readFully(footer);
+            if (XzFormat.decodeStreamFooter(footer) != checkType)
+            {
+                throw new IOException("Corrupt XZ stream footer");
+            }
+
+            if (!nextStream())
+            {
+                return false;
+            }
+        }
+    }
+
+    private boolean nextStream() throws IOException
+    {
+        int padding = 0;
+        int b;
+        while ((b = in.read()) == 0)
+        {
+            padding++;
+        }
+        if (b == -1)
+        {
+            if ((padding & 3) != 0)
+            {
+                throw new IOException("Corrupt XZ stream padding");
+            }
+            return false;
+        }
+        if ((padding & 3) != 0)
+        {
+            throw new IOException("Corrupt XZ stream padding");
+        }
+
+        byte[] streamHeader = new byte[XzFormat.STREAM_HEADER_SIZE];
+        streamHeader[0] = (byte) b;
+        in.readFully(streamHeader, 1, streamHeader.length - 1);
+        checkType = XzFormat.decodeStreamHeader(streamHeader);
+        blocks = 0;
+        return true;
+    }
+
+    private void finishBlock() throws IOException
+    {
+        long compressed = counter.getCount() - blockStart - header.size;
+        if (((header.compressedSize >= 0) && (header.compressedSize != compressed))
+                || ((header.uncompressedSize >= 0) && (header.uncompressedSize != produced)))
+        {
+            throw new IOException("Corrupt XZ block");
+        }
+
+        while (((counter.getCount() - blockStart) & 3) != 0)
+        {
+            if (in.readUnsignedByte() != 0)
+            {
+                throw new IOException("Corrupt XZ block padding");
+            }
+        }
+
+        byte[] stored = new byte[check.getSize()];
+        in.readFully(stored);
+        if (!check.matches(stored))
+        {
+            throw new IOException("XZ integrity check failed");
+        }
+        block = null;
+    }
+}
@@ -2,10 +2,7 @@ package com.kokakiwi.mclauncher.utils;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.IOException;
-import java.io.InputStream;
 import java.net.URL;
-import java.net.URLConnection;
 
 import javax.swing.JTextPane;
 
@@ -89,22 +86,4 @@ public class ClassesUtils
         }
     }
 
-    public static class GameUpdaterThread extends Thread
-    {
-        public InputStream[] is;
-        public URLConnection urlconnection;
-
-        @Override
-        public void run()
-        {
-            try
-            {
-                is[0] = urlconnection.getInputStream();
-            }
-            catch (IOException localIOException)
-            {
-            }
-        }
-    }
-
 }
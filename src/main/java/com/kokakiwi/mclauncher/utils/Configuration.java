@@ -146,6 +146,16 @@ public class Configuration
         return (Integer) get(name);
     }
 
+    public int getInteger(String name, int defaultValue)
+    {
+        Object value = get(name);
+        if (value instanceof Number)
+        {
+            return ((Number) value).intValue();
+        }
+        return defaultValue;
+    }
+
     @SuppressWarnings("unchecked")
     public Object get(String nodeName)
     {
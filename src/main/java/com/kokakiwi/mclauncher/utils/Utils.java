@@ -42,6 +42,39 @@ public class Utils
             return workDir;
         }
 
+        File workingDirectory = getPlatformDirectory(applicationName);
+
+        if (local != null)
+        {
+            workingDirectory = new File(
+                    new File(local + "/").getAbsoluteFile(), "."
+                            + applicationName + "/");
+        }
+
+        if ((!workingDirectory.exists()) && (!workingDirectory.mkdirs()))
+        {
+            throw new RuntimeException(
+                    "The working directory could not be created: "
+                            + workingDirectory);
+        }
+        workDir = workingDirectory;
+
+        return workDir;
+    }
+
+    public static File getStoreDirectory(LauncherFrame launcherFrame)
+    {
+        String storeDir = launcherFrame.config.getString("updater.storeDir");
+        if ((storeDir != null) && (storeDir.trim().length() > 0))
+        {
+            return new File(storeDir).getAbsoluteFile();
+        }
+        return new File(getPlatformDirectory(launcherFrame.config
+                .getString("updater.folderName")), "store");
+    }
+
+    public static File getPlatformDirectory(String applicationName)
+    {
         String userHome = System.getProperty("user.home", ".");
         File workingDirectory;
         switch (Utils.OS.values()[getPlatform().ordinal()])
@@ -71,23 +104,7 @@ public class Utils
             default:
                 workingDirectory = new File(userHome, applicationName + '/');
         }
-
-        if (local != null)
-        {
-            workingDirectory = new File(
-                    new File(local + "/").getAbsoluteFile(), "."
-                            + applicationName + "/");
-        }
-
-        if ((!workingDirectory.exists()) && (!workingDirectory.mkdirs()))
-        {
-            throw new RuntimeException(
-                    "The working directory could not be created: "
-                            + workingDirectory);
-        }
-        workDir = workingDirectory;
-
-        return workDir;
+        return workingDirectory;
     }
 
     public static String executePost(String targetURL, String urlParameters,
@@ -179,6 +196,16 @@ public class Utils
         }
     }
 
+    public static String getFileName(URL url)
+    {
+        String fileName = url.getFile();
+        if (fileName.contains("?"))
+        {
+            fileName = fileName.substring(0, fileName.indexOf("?"));
+        }
+        return fileName.substring(fileName.lastIndexOf('/') + 1);
+    }
+
     public static void openLink(URI uri)
     {
         try